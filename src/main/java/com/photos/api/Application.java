@@ -3,6 +3,7 @@ package com.photos.api;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Controller;
 
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Controller;
  */
 
 @Controller
+@EnableScheduling
 @SpringBootApplication
 public class Application {
 
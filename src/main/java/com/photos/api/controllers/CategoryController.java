@@ -1,6 +1,7 @@
 package com.photos.api.controllers;
 
 import com.photos.api.models.Category;
+import com.photos.api.models.CategoryNode;
 import com.photos.api.services.CategoryService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -41,6 +42,24 @@ public class CategoryController {
                 ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
+    @GetMapping("/tree")
+    @ApiOperation(value = "Returns the whole category tree of the user with photo counts", response = CategoryNode.class)
+    public ResponseEntity getTree() {
+        List<CategoryNode> tree = categoryService.getTree();
+        return tree.size() > 0 ?
+                ResponseEntity.status(HttpStatus.OK).body(tree) :
+                ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
+    @GetMapping("/{id}/subtree")
+    @ApiOperation(value = "Returns the category with all of its descendants", response = Category.class)
+    public ResponseEntity getSubtree(@PathVariable final Long id) {
+        List<Category> categories = categoryService.getSubtree(id);
+        return categories != null ?
+                ResponseEntity.status(HttpStatus.OK).body(categories) :
+                ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
     @GetMapping
     @ApiOperation(value = "Returns root categories", response = Category.class)
     public ResponseEntity getCategories() {
@@ -6,20 +6,20 @@ import com.photos.api.models.ResponsePhoto;
 import com.photos.api.models.Tag;
 import com.photos.api.models.enums.ShareState;
 import com.photos.api.services.PhotoService;
-import com.photos.api.services.RateService;
-import com.photos.api.services.TagService;
+import com.photos.api.services.ResponsePhotoService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,14 +32,14 @@ import java.util.List;
 @Api(description = "Returns private photos")
 public class GetPrivatePhotosController {
 
-    @Autowired
-    private PhotoService photoService;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     @Autowired
-    private RateService rateService;
+    private PhotoService photoService;
 
     @Autowired
-    private TagService tagService;
+    private ResponsePhotoService responsePhotoService;
 
     /*----------------------------------------------------------*/
     /*----------------------------------------------------------*/
@@ -62,9 +62,7 @@ public class GetPrivatePhotosController {
     public ResponseEntity getPhoto(@PathVariable final Long id) {
         Photo photo = photoService.getPhoto(id);
         if (photo != null) {
-            ResponsePhoto p = new ResponsePhoto(photo,
-                    rateService.getPhotoRate(photo),
-                    tagService.getPhotoTags(photo));
+            ResponsePhoto p = responsePhotoService.convert(photo);
             return ResponseEntity.status(HttpStatus.OK).body(p);
         }
 
@@ -91,28 +89,46 @@ public class GetPrivatePhotosController {
 
     @ApiOperation(value = "Returns private photos which belongs to any of categories", response = ResponsePhoto.class)
     @GetMapping("/categories/any/{categories}")
-    public ResponseEntity getByCategoryAny(@ApiParam(required = true, value = "id1,id2,...") @PathVariable List<Category> categories) {
-        List<ResponsePhoto> responsePhotos = convert(photoService.getByCategoryAny(categories));
+    public ResponseEntity getByCategoryAny(@ApiParam(required = true, value = "id1,id2,...") @PathVariable List<Category> categories,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        List<ResponsePhoto> responsePhotos = convert(photoService.getByCategoryAny(categories, pageRequest(page, size)));
 
         if (responsePhotos == null) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        responsePhotos.sort((o1, o2) -> o2.getUploadTime().compareTo(o1.getUploadTime()));
         return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
     }
 
     @ApiOperation(value = "Returns private photos which belongs to all of categories", response = ResponsePhoto.class)
     @GetMapping("/categories/all/{categories}")
-    public ResponseEntity getByCategoryAll(@ApiParam(required = true, value = "id1,id2,...") @PathVariable List<Category> categories) {
+    public ResponseEntity getByCategoryAll(@ApiParam(required = true, value = "id1,id2,...") @PathVariable List<Category> categories,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
 
-        List<ResponsePhoto> responsePhotos = convert(photoService.getByCategoryAll(categories));
+        List<ResponsePhoto> responsePhotos = convert(photoService.getByCategoryAll(categories, pageRequest(page, size)));
+
+        if (responsePhotos == null) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
+    }
+
+
+    @ApiOperation(value = "Returns private photos from the category and all of its subcategories", response = ResponsePhoto.class)
+    @GetMapping("/categories/tree/{id}")
+    public ResponseEntity getByCategoryTree(@PathVariable final Long id,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+
+        List<ResponsePhoto> responsePhotos = convert(photoService.getByCategoryTree(id, pageRequest(page, size)));
 
         if (responsePhotos == null) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        responsePhotos.sort((o1, o2) -> o2.getUploadTime().compareTo(o1.getUploadTime()));
         return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
     }
 
@@ -206,16 +222,13 @@ public class GetPrivatePhotosController {
     /*----------------------------------------------------------*/
     /*----------------------------------------------------------*/
     /*----------------------------------------------------------*/
+    private PageRequest pageRequest(int page, int size) {
+        return PageRequest.of(Math.max(page, 0), size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE));
+    }
+
     private List<ResponsePhoto> convert(List<Photo> photos) {
         if (photos == null) return null;
-        List<ResponsePhoto> responsePhotos = new ArrayList<>();
-
-        for (Photo photo : photos) {
-            responsePhotos.add(
-                    new ResponsePhoto(photo,
-                            rateService.getPhotoRate(photo),
-                            tagService.getPhotoTags(photo)));
-        }
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(photos);
         return responsePhotos.size() == 0 ? null : responsePhotos;
     }
 }
@@ -6,24 +6,30 @@ package com.photos.api.controllers;
  */
 
 import com.photos.api.models.Photo;
+import com.photos.api.models.PhotoCursor;
+import com.photos.api.models.PhotoPage;
 import com.photos.api.models.ResponsePhoto;
 import com.photos.api.models.Tag;
 import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.OffsetPageRequest;
+import com.photos.api.services.HotRankingService;
 import com.photos.api.services.PhotoService;
-import com.photos.api.services.RateService;
-import com.photos.api.services.TagService;
+import com.photos.api.services.ResponsePhotoService;
+import com.photos.api.services.TrendingService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/photos/public")
@@ -33,10 +39,16 @@ public class GetPublicPhotosController {
     private PhotoService photoService;
 
     @Autowired
-    private RateService rateService;
+    private ResponsePhotoService responsePhotoService;
 
     @Autowired
-    private TagService tagService;
+    private HotRankingService hotRankingService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
     /////////////////////////////////////////////////////////////////////////////////////
     /////////////////////////////////////////////////////////////////////////////////////
@@ -75,51 +87,120 @@ public class GetPublicPhotosController {
     @GetMapping("/hot/{beg}/{end}")
     public ResponseEntity getHot(@PathVariable int beg, @PathVariable int end) {
 
-        List<ResponsePhoto> responsePhotos = convert(photoService.getPublic(), beg, end);
-        if (responsePhotos == null) {
+        List<ResponsePhoto> responsePhotos = hotRankingService.isReady() ?
+                responsePhotoService.convert(hotRankingService.getHot(range(beg, end)), hotRankingService::getLikes) :
+                responsePhotoService.convert(photoService.getHot(range(beg, end)));
+        if (responsePhotos.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        responsePhotos.sort((o1, o2) -> o2.getRate() - o1.getRate());
         return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
     }
 
+    @ApiOperation(value = "Returns page of public photos HOT, cursor from before ranking became ready starts from the first page",
+            response = PhotoPage.class)
+    @GetMapping("/hot")
+    public ResponseEntity getHot(@RequestParam(required = false) String cursor,
+                                 @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+
+        PhotoCursor after = PhotoCursor.decode(cursor);
+        if (cursor != null && after == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        size = pageSize(size);
+
+        if (!hotRankingService.isReady()) {
+            List<ResponsePhoto> responsePhotos = responsePhotoService.convert(photoService.getHot(after, size));
+            return page(responsePhotos, size, photo -> new PhotoCursor(PhotoService.HOT_CURSOR_MODE, photo.getRateCount(), photo.getPhotoID()));
+        }
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(hotRankingService.getHot(after, size), hotRankingService::getLikes);
+        return page(responsePhotos, size, photo -> hotRankingService.cursor(photo.getPhotoID()));
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////
 
     @ApiOperation(value = "Returns public photos TRENDING", response = ResponsePhoto.class)
     @GetMapping("/trending/{beg}/{end}")
     public ResponseEntity getTrending(@PathVariable int beg, @PathVariable int end) {
 
-        List<ResponsePhoto> responsePhotos = convert(photoService.getTrending(), beg, end);
-        if (responsePhotos == null) {
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(trendingService.getTrending(range(beg, end)));
+        if (responsePhotos.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        responsePhotos.sort((o1, o2) -> o2.getRate() - o1.getRate());
         return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
     }
 
+    @ApiOperation(value = "Returns page of public photos TRENDING", response = PhotoPage.class)
+    @GetMapping("/trending")
+    public ResponseEntity getTrending(@RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+
+        PhotoCursor after = PhotoCursor.decode(cursor);
+        if (cursor != null && after == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        size = pageSize(size);
+
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(trendingService.getTrending(after, size));
+        return page(responsePhotos, size, photo -> trendingService.cursor(photo.getPhotoID()));
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////
 
     @ApiOperation(value = "Returns public photos FRESH", response = ResponsePhoto.class)
     @GetMapping("/fresh/{beg}/{end}")
     public ResponseEntity getFresh(@PathVariable int beg, @PathVariable int end) {
 
-        List<ResponsePhoto> responsePhotos = convert(photoService.getPublic(), beg, end);
-        if (responsePhotos == null) {
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(photoService.getFresh(range(beg, end)));
+        if (responsePhotos.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
 
-        responsePhotos.sort((o1, o2) -> o2.getUploadTime().compareTo(o1.getUploadTime()));
         return ResponseEntity.status(HttpStatus.OK).body(responsePhotos);
     }
 
+    @ApiOperation(value = "Returns page of public photos FRESH", response = PhotoPage.class)
+    @GetMapping("/fresh")
+    public ResponseEntity getFresh(@RequestParam(required = false) String cursor,
+                                   @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
 
+        PhotoCursor after = PhotoCursor.decode(cursor);
+        if (cursor != null && after == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        size = pageSize(size);
 
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(photoService.getFresh(after, size));
+        return page(responsePhotos, size, photo -> new PhotoCursor(photo.getUploadTime().getTime(), photo.getPhotoID()));
+    }
 
-    private List<ResponsePhoto> convert(List<Photo> photos, int b, int e) {
 
-        List<ResponsePhoto> responsePhotos = new ArrayList<>();
+    private ResponseEntity page(List<ResponsePhoto> responsePhotos, int size, Function<ResponsePhoto, PhotoCursor> cursor) {
+        if (responsePhotos.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+        }
+
+        String next = null;
+        if (responsePhotos.size() == size) {
+            PhotoCursor last = cursor.apply(responsePhotos.get(responsePhotos.size() - 1));
+            next = last != null ? last.encode() : null;
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(new PhotoPage(responsePhotos, next));
+    }
+
+    private Pageable range(int b, int e) {
+        if (b < 0) {
+            b = 0;
+        }
+        return new OffsetPageRequest(b, e > b ? pageSize(e - b) : MAX_PAGE_SIZE);
+    }
+
+    private int pageSize(int size) {
+        return size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private List<ResponsePhoto> convert(List<Photo> photos, int b, int e) {
 
         if (b < 0 || b > photos.size()) {
             b = 0;
@@ -128,12 +209,7 @@ public class GetPublicPhotosController {
             e = photos.size();
         }
         photos = photos.subList(b, e);
-        for (Photo photo : photos) {
-            responsePhotos.add(
-                    new ResponsePhoto(photo,
-                            rateService.getPhotoRate(photo),
-                            tagService.getPhotoTags(photo)));
-        }
+        List<ResponsePhoto> responsePhotos = responsePhotoService.convert(photos);
         return responsePhotos.size() == 0 ? null : responsePhotos;
     }
 }
@@ -1,17 +1,37 @@
 package com.photos.api.controllers;
 
+import com.photos.api.models.ImageCacheStats;
+import com.photos.api.models.ImageMigrationStats;
+import com.photos.api.services.BlobResource;
+import com.photos.api.services.ImageCache;
+import com.photos.api.services.ImageMigrationService;
 import com.photos.api.services.ImageService;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 /**
  * @author Micha Królewski on 2018-04-29.
@@ -25,19 +45,99 @@ public class ImageController {
     @Autowired
     private ImageService imageService;
 
-    @ApiOperation(value = "Returns image")
+    @Autowired
+    private ImageCache imageCache;
+
+    @Autowired
+    private ImageMigrationService imageMigrationService;
+
+    /**
+     * Plik zdjecia o danym id nigdy sie nie zmienia, a dostep do prywatnych zdjec wymaga tokenu
+     */
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @ApiOperation(value = "Returns image, supports Range and conditional requests")
     @GetMapping("/{photoId}")
-    public ResponseEntity getImage(@PathVariable Long photoId) {
+    public ResponseEntity getImage(@PathVariable Long photoId,
+                                   @ApiParam(value = "longer edge in px, served from the nearest larger rendition") @RequestParam(required = false) Integer size,
+                                   ServletWebRequest webRequest) throws IOException {
 
-        try {
-            Resource file = imageService.findImage(photoId);
-            return file != null ?
-                    ResponseEntity.status(HttpStatus.OK).contentLength(file.contentLength()).contentType(MediaType.IMAGE_JPEG).body(new InputStreamResource(file.getInputStream())) :
-                    ResponseEntity.status(HttpStatus.NO_CONTENT).build();
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.NO_CONTENT)
-                    .body("Couldn't find " + photoId);
+        Resource image = imageService.findImage(photoId, size);
+        if (image == null || !image.exists()) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
+
+        File file = image.isFile() ? image.getFile() : null;
+        long length = file != null ? file.length() : image.contentLength();
+        String etag = "\"" + image.getFilename() + "-" + length + "\"";
+        if (webRequest.checkNotModified(etag, file != null ? file.lastModified() : -1)) {
+            return null;
+        }
+
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = range(request, etag);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start >= length || start > end) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length).build();
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(end - start + 1);
+
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return null;
+        }
+        if (file == null) {
+            stream((BlobResource) image, range != null ? start : -1, end, response);
+        } else {
+            ByteBuffer cached = imageCache.get(file.toPath());
+            if (cached != null) {
+                write(cached, start, end, response);
+            } else {
+                send(file, start, end, request, response);
+            }
+        }
+        return null;
+    }
+
+    @ApiOperation(value = "Returns image cache statistics", response = ImageCacheStats.class)
+    @GetMapping("/cache/stats")
+    public ResponseEntity getCacheStats() {
+        return ResponseEntity.status(HttpStatus.OK).body(imageCache.getStats());
+    }
+
+    @ApiOperation(value = "Starts moving images from per-user directories to the blob store")
+    @PostMapping("/migration")
+    public ResponseEntity startMigration() {
+        return imageMigrationService.start() ?
+                ResponseEntity.status(HttpStatus.ACCEPTED).body(imageMigrationService.getStats()) :
+                ResponseEntity.status(HttpStatus.CONFLICT).body(imageMigrationService.getStats());
+    }
+
+    @ApiOperation(value = "Returns progress of moving images to the blob store", response = ImageMigrationStats.class)
+    @GetMapping("/migration")
+    public ResponseEntity getMigrationStats() {
+        return ResponseEntity.status(HttpStatus.OK).body(imageMigrationService.getStats());
     }
 
     @ApiOperation(value = "Creates new image")
@@ -47,4 +147,66 @@ public class ImageController {
                 ResponseEntity.status(HttpStatus.CREATED).build() :
                 ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
     }
+
+    /**
+     * Zwraca pojedynczy zakres z naglowka Range lub null, gdy trzeba wyslac caly plik
+     * (brak naglowka, kilka zakresow, bledna skladnia albo If-Range niezgodny z ETag)
+     */
+    private HttpRange range(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (header == null || (ifRange != null && !ifRange.equals(etag))) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Kopiuje do odpowiedzi blob z magazynu zdalnego, a dla zakresu tylko zadane bajty
+     */
+    private void stream(BlobResource blob, long start, long end, HttpServletResponse response) throws IOException {
+        try (InputStream in = start >= 0 ? blob.getInputStream(start, end) : blob.getInputStream()) {
+            StreamUtils.copy(in, response.getOutputStream());
+        }
+    }
+
+    private void write(ByteBuffer buffer, long start, long end, HttpServletResponse response) throws IOException {
+        buffer.limit((int) end + 1).position((int) start);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Jesli kontener obsluguje sendfile (Tomcat NIO) zleca mu wyslanie zakresu pliku,
+     * w przeciwnym razie kopiuje go FileChannel.transferTo do strumienia odpowiedzi
+     */
+    private void send(File file, long start, long end, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
 }
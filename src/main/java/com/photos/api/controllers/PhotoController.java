@@ -1,8 +1,10 @@
 package com.photos.api.controllers;
 
+import com.photos.api.models.Blob;
 import com.photos.api.models.Photo;
 import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.enums.ShareState;
+import com.photos.api.services.BlobService;
 import com.photos.api.services.PhotoService;
 import com.photos.api.services.PhotoToCategoryService;
 import com.photos.api.services.RateService;
@@ -10,9 +12,12 @@ import com.photos.api.services.TagService;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,6 +42,9 @@ public class PhotoController {
     @Autowired
     private TagService tagService;
 
+    @Autowired
+    private BlobService blobService;
+
     @ApiOperation(value = "Creates new photo")
     @PostMapping
     public ResponseEntity addPhoto(@RequestBody final Photo photo) {
@@ -48,6 +56,28 @@ public class PhotoController {
                 ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
     }
 
+    @ApiOperation(value = "Creates new photo with image sent as request body, metadata in parameters")
+    @PostMapping(value = "/upload", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity addPhotoWithImage(@RequestParam final String name,
+                                            @RequestParam(required = false) final String description,
+                                            @RequestParam(required = false) final ShareState shareState,
+                                            HttpServletRequest request) throws IOException {
+        Blob blob = blobService.store(request.getInputStream());
+        if (blob == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Photo photo = new Photo();
+        photo.setName(name);
+        photo.setDescription(description);
+        photo.setShareState(shareState);
+        Long id = photoService.addPhotoWithImage(photo, blob);
+        Map<String, Long> map = new HashMap<>();
+        map.put("id", id);
+        return id != -1 ?
+                ResponseEntity.status(HttpStatus.CREATED).body(map) :
+                ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+    }
+
     @ApiOperation(value = "Removes photo")
     @DeleteMapping("/{id}")
     public ResponseEntity deletePhoto(@PathVariable final Long id) {
@@ -1,6 +1,8 @@
 package com.photos.api.controllers;
 
 import com.photos.api.models.Tag;
+import com.photos.api.models.TagResult;
+import com.photos.api.models.TagSuggestion;
 import com.photos.api.services.TagService;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +24,9 @@ public class TagController {
     @Autowired
     private TagService tagService;
 
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+
     @ApiOperation(value = "Returns public tags",response = Tag.class)
     @GetMapping("/public")
     public ResponseEntity getPublicTags() {
@@ -31,10 +36,11 @@ public class TagController {
                 ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
-    @ApiOperation(value = "Returns public tags started with",response = Tag.class)
+    @ApiOperation(value = "Returns most used public tag names started with",response = TagSuggestion.class)
     @GetMapping("/public/{name}")
-    public ResponseEntity getPublicTags(@PathVariable final String name) {
-        List<Tag> tags = tagService.getPublicTags(name);
+    public ResponseEntity getPublicTags(@PathVariable final String name,
+                                        @RequestParam(defaultValue = "" + DEFAULT_LIMIT) final int limit) {
+        List<TagSuggestion> tags = tagService.getPublicTags(name, Math.min(limit, MAX_LIMIT));
         return tags != null ?
                 ResponseEntity.status(HttpStatus.OK).body(tags) :
                 ResponseEntity.status(HttpStatus.NO_CONTENT).build();
@@ -49,10 +55,11 @@ public class TagController {
                 ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
-    @ApiOperation(value = "Returns private tags started with",response = Tag.class)
+    @ApiOperation(value = "Returns most used private tag names started with",response = TagSuggestion.class)
     @GetMapping("/{name}")
-    public ResponseEntity getTags(@PathVariable final String name) {
-        List<Tag> tags = tagService.getTags(name);
+    public ResponseEntity getTags(@PathVariable final String name,
+                                  @RequestParam(defaultValue = "" + DEFAULT_LIMIT) final int limit) {
+        List<TagSuggestion> tags = tagService.getTags(name, Math.min(limit, MAX_LIMIT));
         return tags != null ?
                 ResponseEntity.status(HttpStatus.OK).body(tags) :
                 ResponseEntity.status(HttpStatus.NO_CONTENT).build();
@@ -67,6 +74,13 @@ public class TagController {
 
     }
 
+    @ApiOperation(value = "Creates many tags at once and returns result for each of them", response = TagResult.class)
+    @PostMapping("/bulk")
+    public ResponseEntity addTagsBulk(@RequestBody final List<Tag> tags) {
+        List<TagResult> results = tagService.addTagsBulk(tags);
+        return ResponseEntity.status(HttpStatus.OK).body(results);
+    }
+
     @ApiOperation(value = "Crates new tag")
     @PostMapping("/")
     public ResponseEntity addTag(@RequestBody final Tag tag) {
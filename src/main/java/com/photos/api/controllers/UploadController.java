@@ -0,0 +1,113 @@
+package com.photos.api.controllers;
+
+import com.photos.api.models.UploadSession;
+import com.photos.api.models.enums.UploadStatus;
+import com.photos.api.services.UploadService;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Wysylanie oryginalow zdjec w czesciach z mozliwoscia wznowienia.
+ * Klient zaklada sesje, wysyla kolejne czesci PUT z naglowkiem Upload-Offset
+ * (po zerwaniu polaczenia odczytuje offset przez GET lub HEAD), a na koncu konczy sesje.
+ *
+ * @version 1.0
+ */
+
+@RestController
+@RequestMapping("/images/uploads")
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_CHECKSUM = "Upload-Checksum";
+
+    @Autowired
+    private UploadService uploadService;
+
+    @ApiOperation(value = "Starts or resumes chunked upload of image for photo (photoID, length, optional sha256), " +
+            "returns 200 without session id when another photo of the user already has file with given sha256", response = UploadSession.class)
+    @PostMapping
+    public ResponseEntity initiate(@RequestBody final UploadSession request) {
+        UploadSession session = uploadService.initiate(request);
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.status(session.getId() != null ? HttpStatus.CREATED : HttpStatus.OK)
+                .header(UPLOAD_OFFSET, String.valueOf(session.getOffset())).body(session);
+    }
+
+    @ApiOperation(value = "Returns upload session with offset to resume from", response = UploadSession.class)
+    @GetMapping("/{uploadId}")
+    public ResponseEntity getSession(@PathVariable final String uploadId) {
+        UploadSession session = uploadService.getSession(uploadId);
+        return session != null ?
+                ResponseEntity.status(HttpStatus.OK)
+                        .header(UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                        .header(UPLOAD_LENGTH, String.valueOf(session.getLength()))
+                        .body(session) :
+                ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+
+    @ApiOperation(value = "Writes chunk at Upload-Offset, optional Upload-Checksum is hex sha256 of chunk")
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity writeChunk(@PathVariable final String uploadId,
+                                     @RequestHeader(UPLOAD_OFFSET) final long offset,
+                                     @ApiParam(value = "hex sha256 of chunk") @RequestHeader(value = UPLOAD_CHECKSUM, required = false) final String checksum,
+                                     HttpServletRequest request) throws IOException {
+        return response(uploadId, uploadService.writeChunk(uploadId, offset, checksum, request.getInputStream()), HttpStatus.NO_CONTENT);
+    }
+
+    @ApiOperation(value = "Verifies sha256 and stores uploaded file as image of photo")
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity complete(@PathVariable final String uploadId) {
+        return response(uploadId, uploadService.complete(uploadId), HttpStatus.CREATED);
+    }
+
+    @ApiOperation(value = "Cancels upload and removes received data")
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity cancel(@PathVariable final String uploadId) {
+        return uploadService.cancel(uploadId) ?
+                ResponseEntity.status(HttpStatus.NO_CONTENT).build() :
+                ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+
+    /**
+     * Odpowiedz dla wyniku operacji; gdy sesja nadal istnieje, dolacza jej biezacy offset
+     */
+    private ResponseEntity response(String uploadId, UploadStatus status, HttpStatus success) {
+        ResponseEntity.BodyBuilder builder;
+        switch (status) {
+            case OK:
+                builder = ResponseEntity.status(success);
+                break;
+            case NOT_FOUND:
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            case BUSY:
+                return ResponseEntity.status(HttpStatus.LOCKED).build();
+            case OFFSET_MISMATCH:
+            case INCOMPLETE:
+                builder = ResponseEntity.status(HttpStatus.CONFLICT);
+                break;
+            case TOO_LARGE:
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+            case CHECKSUM_MISMATCH:
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+            default:
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        UploadSession session = uploadService.getSession(uploadId);
+        if (session != null) {
+            builder.header(UPLOAD_OFFSET, String.valueOf(session.getOffset()));
+        }
+        return builder.build();
+    }
+}
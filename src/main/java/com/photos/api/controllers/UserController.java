@@ -1,5 +1,6 @@
 package com.photos.api.controllers;
 
+import com.photos.api.models.AccountDeletion;
 import com.photos.api.models.User;
 import com.photos.api.services.UserService;
 import io.swagger.annotations.ApiOperation;
@@ -11,6 +12,8 @@ import org.springframework.web.bind.annotation.*;
 import java.io.IOException;
 import java.util.List;
 
+import static com.photos.api.security.SecurityConstants.JWT;
+
 /**
  * @author Micha Królewski on 2018-04-07.
  * @version 1.0
@@ -57,11 +60,21 @@ public class UserController {
                 ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
 
-    @ApiOperation(value = "Removes user")
+    @ApiOperation(value = "Schedules removal of logged user, returns deletion job", response = AccountDeletion.class)
     @DeleteMapping
-    public ResponseEntity deleteUser() {
-        return userService.deleteUser() ?
-                ResponseEntity.status(HttpStatus.OK).build() :
+    public ResponseEntity deleteUser(@CookieValue(value = JWT, required = false) final String token) {
+        AccountDeletion deletion = userService.deleteUser(token);
+        return deletion != null ?
+                ResponseEntity.status(HttpStatus.ACCEPTED).body(deletion) :
                 ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
     }
+
+    @ApiOperation(value = "Returns progress of user removal", response = AccountDeletion.class)
+    @GetMapping("/deletions/{id}")
+    public ResponseEntity getDeletion(@PathVariable final Long id) {
+        AccountDeletion deletion = userService.getDeletion(id);
+        return deletion != null ?
+                ResponseEntity.status(HttpStatus.OK).body(deletion) :
+                ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
 }
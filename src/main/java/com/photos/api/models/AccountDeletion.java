@@ -0,0 +1,127 @@
+package com.photos.api.models;
+
+import com.photos.api.models.enums.DeletionPhase;
+import io.swagger.annotations.ApiModel;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.sql.Timestamp;
+
+/**
+ * Zlecenie usuniecia konta wraz z postepem. Nie ma klucza obcego do uzytkownika,
+ * bo przezywa jego usuniecie.
+ *
+ * @version 1.0
+ */
+
+@Entity
+@Table(name = "account_deletion")
+@ApiModel
+public class AccountDeletion {
+
+    @Id
+    @GeneratedValue
+    @NotNull
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_id")
+    private Long userID;
+
+    @NotNull
+    @Column(name = "email")
+    private String email;
+
+    @NotNull
+    @Column(name = "phase")
+    private DeletionPhase phase;
+
+    @Column(name = "photos_total")
+    private long photosTotal;
+
+    @Column(name = "photos_deleted")
+    private long photosDeleted;
+
+    @Column(name = "requested")
+    private Timestamp requested;
+
+    @Column(name = "updated")
+    private Timestamp updated;
+
+    public AccountDeletion() {
+    }
+
+    public AccountDeletion(Long userID, String email, long photosTotal) {
+        this.userID = userID;
+        this.email = email;
+        this.photosTotal = photosTotal;
+        this.phase = DeletionPhase.PHOTOS;
+        this.requested = new Timestamp(System.currentTimeMillis());
+        this.updated = requested;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserID() {
+        return userID;
+    }
+
+    public void setUserID(Long userID) {
+        this.userID = userID;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public DeletionPhase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(DeletionPhase phase) {
+        this.phase = phase;
+    }
+
+    public long getPhotosTotal() {
+        return photosTotal;
+    }
+
+    public void setPhotosTotal(long photosTotal) {
+        this.photosTotal = photosTotal;
+    }
+
+    public long getPhotosDeleted() {
+        return photosDeleted;
+    }
+
+    public void setPhotosDeleted(long photosDeleted) {
+        this.photosDeleted = photosDeleted;
+    }
+
+    public Timestamp getRequested() {
+        return requested;
+    }
+
+    public void setRequested(Timestamp requested) {
+        this.requested = requested;
+    }
+
+    public Timestamp getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Timestamp updated) {
+        this.updated = updated;
+    }
+}
@@ -0,0 +1,82 @@
+package com.photos.api.models;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.sql.Timestamp;
+
+/**
+ * Plik zdjecia adresowany trescia (SHA-256) wraz z liczba zdjec, ktore na niego wskazuja.
+ * Blob bez odwolan jest usuwany przez BlobService.collect po okresie karencji liczonym od touched.
+ *
+ * @version 1.0
+ */
+
+@Entity
+@Table(name = "image_blob")
+public class Blob {
+
+    @Id
+    @NotNull
+    @Column(name = "hash")
+    private String hash;
+
+    @Column(name = "size")
+    private long size;
+
+    @Column(name = "ref_count")
+    private long refCount;
+
+    @Column(name = "created")
+    private Timestamp created;
+
+    @Column(name = "touched")
+    private Timestamp touched;
+
+    public Blob() {
+    }
+
+    public Blob(String hash, long size) {
+        this.hash = hash;
+        this.size = size;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    public Timestamp getTouched() {
+        return touched;
+    }
+
+    public void setTouched(Timestamp touched) {
+        this.touched = touched;
+    }
+}
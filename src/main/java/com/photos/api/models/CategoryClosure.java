@@ -0,0 +1,91 @@
+package com.photos.api.models;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Wiersz tabeli domkniecia hierarchii kategorii: ancestor jest przodkiem descendant
+ * oddalonym o depth poziomow. Kazda kategoria ma tez wiersz z sama soba (depth = 0).
+ *
+ * @version 1.0
+ */
+
+@Entity
+@Table(name = "category_closure", indexes = @Index(name = "category_closure_descendant", columnList = "descendant"))
+@IdClass(CategoryClosure.Key.class)
+public class CategoryClosure {
+
+    @Id
+    @Column(name = "ancestor")
+    private Long ancestor;
+
+    @Id
+    @Column(name = "descendant")
+    private Long descendant;
+
+    @Column(name = "depth")
+    private int depth;
+
+    public CategoryClosure() {
+    }
+
+    public CategoryClosure(Long ancestor, Long descendant, int depth) {
+        this.ancestor = ancestor;
+        this.descendant = descendant;
+        this.depth = depth;
+    }
+
+    public Long getAncestor() {
+        return ancestor;
+    }
+
+    public void setAncestor(Long ancestor) {
+        this.ancestor = ancestor;
+    }
+
+    public Long getDescendant() {
+        return descendant;
+    }
+
+    public void setDescendant(Long descendant) {
+        this.descendant = descendant;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long ancestor;
+        private Long descendant;
+
+        public Key() {
+        }
+
+        public Key(Long ancestor, Long descendant) {
+            this.ancestor = ancestor;
+            this.descendant = descendant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(ancestor, key.ancestor) && Objects.equals(descendant, key.descendant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ancestor, descendant);
+        }
+    }
+}
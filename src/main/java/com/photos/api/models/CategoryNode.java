@@ -0,0 +1,59 @@
+package com.photos.api.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wezel drzewa kategorii uzytkownika z liczba aktywnych zdjec przypisanych bezposrednio do kategorii.
+ *
+ * @version 1.0
+ */
+
+public class CategoryNode {
+
+    private Long categoryID;
+    private String name;
+    private long photos;
+    private List<CategoryNode> children = new ArrayList<>();
+
+    public CategoryNode() {
+    }
+
+    public CategoryNode(Long categoryID, String name, long photos) {
+        this.categoryID = categoryID;
+        this.name = name;
+        this.photos = photos;
+    }
+
+    public Long getCategoryID() {
+        return categoryID;
+    }
+
+    public void setCategoryID(Long categoryID) {
+        this.categoryID = categoryID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getPhotos() {
+        return photos;
+    }
+
+    public void setPhotos(long photos) {
+        this.photos = photos;
+    }
+
+    public List<CategoryNode> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<CategoryNode> children) {
+        this.children = children;
+    }
+}
@@ -0,0 +1,67 @@
+package com.photos.api.models;
+
+/**
+ * Postep przenoszenia starych plikow zdjec do magazynu blobow.
+ *
+ * @version 1.0
+ */
+
+public class ImageMigrationStats {
+
+    private boolean running;
+    private long migrated;
+    private long missing;
+    private long failed;
+    private long remaining;
+
+    public ImageMigrationStats() {
+    }
+
+    public ImageMigrationStats(boolean running, long migrated, long missing, long failed, long remaining) {
+        this.running = running;
+        this.migrated = migrated;
+        this.missing = missing;
+        this.failed = failed;
+        this.remaining = remaining;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public long getMigrated() {
+        return migrated;
+    }
+
+    public void setMigrated(long migrated) {
+        this.migrated = migrated;
+    }
+
+    public long getMissing() {
+        return missing;
+    }
+
+    public void setMissing(long missing) {
+        this.missing = missing;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public void setRemaining(long remaining) {
+        this.remaining = remaining;
+    }
+}
@@ -55,6 +55,9 @@ public class Photo {
     @Column(name = "has_category")
     private boolean hasCategory;
 
+    @Column(name = "rate_count")
+    private long rateCount;
+
     public Photo(@NotNull String name, @NotNull User user, String path, @NotNull Timestamp uploadTime, String description, ShareState shareState, PhotoState photoState) {
         this.name = name;
         this.owner = user;
@@ -101,7 +104,6 @@ public class Photo {
         return path;
     }
 
-    @JsonProperty
     @ApiModelProperty(hidden = true)
     public void setPath(String path) {
         this.path = path;
@@ -168,4 +170,14 @@ public class Photo {
     public void setHasCategory(boolean hasCategory) {
         this.hasCategory = hasCategory;
     }
+
+    @JsonIgnore
+    public long getRateCount() {
+        return rateCount;
+    }
+
+    @ApiModelProperty(hidden = true)
+    public void setRateCount(long rateCount) {
+        this.rateCount = rateCount;
+    }
 }
@@ -0,0 +1,66 @@
+package com.photos.api.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Pozycja w posortowanym feedzie: wartosc sortowania ostatniego zdjecia i jego id.
+ * Feed, ktory moze byc liczony na dwa sposoby, oznacza kursor rodzajem wartosci (mode).
+ *
+ * @version 1.0
+ */
+
+public class PhotoCursor {
+
+    private final String mode;
+    private final long value;
+    private final long id;
+
+    public PhotoCursor(long value, long id) {
+        this(null, value, id);
+    }
+
+    public PhotoCursor(String mode, long value, long id) {
+        this.mode = mode;
+        this.value = value;
+        this.id = id;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = (mode == null ? "" : mode + ":") + value + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token
+     * @return {kursor lub null gdy token jest pusty albo niepoprawny}
+     */
+    public static PhotoCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length == 2) {
+                return new PhotoCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            }
+            return parts.length == 3 && !parts[0].isEmpty() ?
+                    new PhotoCursor(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.photos.api.models;
+
+import java.util.List;
+
+/**
+ * Strona feedu wraz z kursorem do pobrania kolejnej.
+ *
+ * @version 1.0
+ */
+
+public class PhotoPage {
+
+    private List<ResponsePhoto> photos;
+    private String next;
+
+    public PhotoPage() {
+    }
+
+    public PhotoPage(List<ResponsePhoto> photos, String next) {
+        this.photos = photos;
+        this.next = next;
+    }
+
+    public List<ResponsePhoto> getPhotos() {
+        return photos;
+    }
+
+    public void setPhotos(List<ResponsePhoto> photos) {
+        this.photos = photos;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -16,6 +16,7 @@ public class ResponsePhoto extends Photo {
     public ResponsePhoto(Photo photo, int rate, List<Tag> tags) {
         super(photo.getName(), photo.getOwner(), photo.getPath(), photo.getUploadTime(), photo.getDescription(), photo.getShareState(), photo.getPhotoState());
         this.setPhotoID(photo.getPhotoID());
+        this.setRateCount(photo.getRateCount());
         this.rate = rate;
         this.tags = tags;
     }
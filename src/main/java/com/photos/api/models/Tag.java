@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -20,8 +22,16 @@ import javax.validation.constraints.NotNull;
 @ApiModel
 public class Tag {
 
+    /**
+     * Identyfikatory z osobnej sekwencji pobierane po 50, zeby zbiorcze inserty mogly isc batchami JDBC
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "tag_id")
+    @GenericGenerator(name = "tag_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "tag_sequence"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     @NotNull
     @Column(name = "id")
     private Long tagID;
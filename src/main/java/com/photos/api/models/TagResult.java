@@ -0,0 +1,59 @@
+package com.photos.api.models;
+
+import com.photos.api.models.enums.TagResultStatus;
+
+/**
+ * Wynik dodania tagu z zadania zbiorczego, w kolejnosci zadania.
+ *
+ * @version 1.0
+ */
+
+public class TagResult {
+
+    private Long photoID;
+    private String name;
+    private Long tagID;
+    private TagResultStatus status;
+
+    public TagResult() {
+    }
+
+    public TagResult(Long photoID, String name, Long tagID, TagResultStatus status) {
+        this.photoID = photoID;
+        this.name = name;
+        this.tagID = tagID;
+        this.status = status;
+    }
+
+    public Long getPhotoID() {
+        return photoID;
+    }
+
+    public void setPhotoID(Long photoID) {
+        this.photoID = photoID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getTagID() {
+        return tagID;
+    }
+
+    public void setTagID(Long tagID) {
+        this.tagID = tagID;
+    }
+
+    public TagResultStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TagResultStatus status) {
+        this.status = status;
+    }
+}
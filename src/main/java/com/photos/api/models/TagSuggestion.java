@@ -0,0 +1,37 @@
+package com.photos.api.models;
+
+/**
+ * Podpowiedz nazwy tagu wraz z liczba jego uzyc.
+ *
+ * @version 1.0
+ */
+
+public class TagSuggestion {
+
+    private String name;
+    private int count;
+
+    public TagSuggestion() {
+    }
+
+    public TagSuggestion(String name, int count) {
+        this.name = name;
+        this.count = count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
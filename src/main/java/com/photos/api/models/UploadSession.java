@@ -0,0 +1,127 @@
+package com.photos.api.models;
+
+import io.swagger.annotations.ApiModel;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.sql.Timestamp;
+
+/**
+ * Sesja wysylania oryginalu zdjecia w czesciach. Zapisany offset to liczba bajtow
+ * trwale zapisanych w pliku czesciowym, od niego klient wznawia wysylanie.
+ *
+ * @version 1.0
+ */
+
+@Entity
+@Table(name = "upload_session")
+@ApiModel
+public class UploadSession {
+
+    @Id
+    @NotNull
+    @Column(name = "id")
+    private String id;
+
+    @NotNull
+    @Column(name = "user_id")
+    private Long userID;
+
+    @NotNull
+    @Column(name = "email")
+    private String email;
+
+    @NotNull
+    @Column(name = "photo_id")
+    private Long photoID;
+
+    @Column(name = "length")
+    private long length;
+
+    @Column(name = "upload_offset")
+    private long offset;
+
+    @Column(name = "sha256")
+    private String sha256;
+
+    @Column(name = "created")
+    private Timestamp created;
+
+    @Column(name = "updated")
+    private Timestamp updated;
+
+    public UploadSession() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getUserID() {
+        return userID;
+    }
+
+    public void setUserID(Long userID) {
+        this.userID = userID;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Long getPhotoID() {
+        return photoID;
+    }
+
+    public void setPhotoID(Long photoID) {
+        this.photoID = photoID;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    public Timestamp getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Timestamp updated) {
+        this.updated = updated;
+    }
+}
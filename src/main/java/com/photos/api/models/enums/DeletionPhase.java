@@ -0,0 +1,16 @@
+package com.photos.api.models.enums;
+
+/**
+ * Etapy usuwania konta, wykonywane po kolei przez AccountDeletionService.
+ *
+ * @version 1.0
+ */
+
+
+public enum DeletionPhase {
+    PHOTOS,
+    DATA,
+    FILES,
+    USER,
+    DONE;
+}
@@ -8,5 +8,9 @@ package com.photos.api.models.enums;
 
 public enum PhotoState {
     ARCHIVED,
-    ACTIVE;
+    ACTIVE,
+    /**
+     * Usuniete przez uzytkownika, czeka na PhotoReclaimer
+     */
+    DELETED;
 }
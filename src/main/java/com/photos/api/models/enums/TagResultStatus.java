@@ -0,0 +1,15 @@
+package com.photos.api.models.enums;
+
+/**
+ * Wynik dodania pojedynczego tagu w operacji zbiorczej.
+ *
+ * @version 1.0
+ */
+
+
+public enum TagResultStatus {
+    CREATED,
+    DUPLICATE,
+    PHOTO_NOT_FOUND,
+    INVALID;
+}
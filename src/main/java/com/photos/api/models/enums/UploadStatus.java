@@ -0,0 +1,19 @@
+package com.photos.api.models.enums;
+
+/**
+ * Wynik operacji na sesji wysylania pliku w czesciach.
+ *
+ * @version 1.0
+ */
+
+
+public enum UploadStatus {
+    OK,
+    NOT_FOUND,
+    BUSY,
+    OFFSET_MISMATCH,
+    TOO_LARGE,
+    CHECKSUM_MISMATCH,
+    INCOMPLETE,
+    FAILED;
+}
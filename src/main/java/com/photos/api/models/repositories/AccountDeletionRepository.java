@@ -0,0 +1,28 @@
+package com.photos.api.models.repositories;
+
+import com.photos.api.models.AccountDeletion;
+import com.photos.api.models.enums.DeletionPhase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * @version 1.0
+ */
+
+@Component
+public interface AccountDeletionRepository extends JpaRepository<AccountDeletion, Long> {
+
+    AccountDeletion findFirstByUserIDAndPhaseNot(Long userID, DeletionPhase phase);
+
+    boolean existsByEmailAndPhaseNot(String email, DeletionPhase phase);
+
+    List<AccountDeletion> findAllByPhaseNotOrderById(DeletionPhase phase);
+
+    @Query("select d.userID from AccountDeletion d where d.phase <> :phase or d.updated > :after")
+    List<Long> findUserIDsByPhaseNotOrUpdatedAfter(@Param("phase") DeletionPhase phase, @Param("after") Timestamp after);
+}
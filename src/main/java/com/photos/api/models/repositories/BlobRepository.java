@@ -0,0 +1,49 @@
+package com.photos.api.models.repositories;
+
+import com.photos.api.models.Blob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * @version 1.0
+ */
+
+@Component
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    /**
+     * Zaklada wiersz bez odwolan albo odswieza touched istniejacego. Zawsze we wlasnej transakcji,
+     * zeby plik na dysku nie zostal bez wiersza po wycofaniu transakcji wywolujacego
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "insert into image_blob (hash, size, ref_count, created, touched) values (:hash, :size, 0, :now, :now) " +
+            "on duplicate key update touched = :now", nativeQuery = true)
+    int touch(@Param("hash") String hash, @Param("size") long size, @Param("now") Timestamp now);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount + 1, b.touched = :now where b.hash = :hash")
+    int retain(@Param("hash") String hash, @Param("now") Timestamp now);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount - 1, b.touched = :now where b.hash = :hash")
+    int release(@Param("hash") String hash, @Param("now") Timestamp now);
+
+    @Query("select b.hash from Blob b where b.refCount <= 0 and b.touched < :before order by b.touched")
+    List<String> findUnreferenced(@Param("before") Timestamp before, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Blob b where b.hash = :hash and b.refCount <= 0 and b.touched < :before")
+    int deleteUnreferenced(@Param("hash") String hash, @Param("before") Timestamp before);
+}
@@ -0,0 +1,67 @@
+package com.photos.api.models.repositories;
+
+import com.photos.api.models.CategoryClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @version 1.0
+ */
+
+@Component
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, CategoryClosure.Key> {
+
+    boolean existsByAncestorAndDescendant(Long ancestor, Long descendant);
+
+    @Query("select c.descendant from CategoryClosure c where c.ancestor = :id")
+    List<Long> findDescendants(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor, descendant, depth) values (:id, :id, 0)", nativeQuery = true)
+    int insertSelf(@Param("id") Long id);
+
+    /**
+     * Dopisuje sciezki od wszystkich przodkow rodzica do nowej kategorii (bez wiersza z sama soba)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor, descendant, depth) " +
+            "select c.ancestor, :id, c.depth + 1 from category_closure c where c.descendant = :parent", nativeQuery = true)
+    int insertAncestors(@Param("id") Long id, @Param("parent") Long parent);
+
+    /**
+     * Odcina poddrzewo od dotychczasowych przodkow, zostawiajac sciezki wewnatrz poddrzewa
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from CategoryClosure c where c.descendant in :subtree and c.ancestor not in :subtree")
+    int detach(@Param("subtree") Collection<Long> subtree);
+
+    /**
+     * Podpina poddrzewo kategorii id pod rodzica, laczac kazdego przodka rodzica z kazdym wezlem poddrzewa
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into category_closure (ancestor, descendant, depth) " +
+            "select a.ancestor, d.descendant, a.depth + d.depth + 1 from category_closure a, category_closure d " +
+            "where a.descendant = :parent and d.ancestor = :id", nativeQuery = true)
+    int attach(@Param("id") Long id, @Param("parent") Long parent);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CategoryClosure c where c.descendant in :ids")
+    int deleteAllByDescendantIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CategoryClosure c where c.descendant in (select cat.categoryID from Category cat where cat.user.userID = :user)")
+    int deleteAllByUserID(@Param("user") Long user);
+}
@@ -2,9 +2,15 @@ package com.photos.api.models.repositories;
 
 import com.photos.api.models.Category;
 import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,4 +30,38 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     void deleteAllByUser(User user);
 
     List<Category> findAllByUser(User user);
+
+    @Query("select c from Category c, CategoryClosure cc where cc.ancestor = :id and c.categoryID = cc.descendant " +
+            "and c.user = :user order by cc.depth, c.name")
+    List<Category> findSubtree(@Param("id") Long id, @Param("user") User user);
+
+    @Query("select c.categoryID, c.name, parent.categoryID, count(photo.photoID) from Category c " +
+            "left join c.parentCategory parent " +
+            "left join PhotoToCategory ptc on ptc.category = c " +
+            "left join ptc.photo photo on photo.photoState = :ps " +
+            "where c.user = :user group by c.categoryID, c.name, parent.categoryID")
+    List<Object[]> findTreeRows(@Param("user") User user, @Param("ps") PhotoState ps);
+
+    @Query("select c.categoryID, p.categoryID from Category c left join c.parentCategory p")
+    List<Object[]> findIDsAndParentIDs();
+
+    @Transactional
+    @Modifying
+    @Query("update Category c set c.parentCategory = null where c.categoryID in :ids")
+    int clearParents(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Category c where c.categoryID in :ids")
+    int deleteAllByIDs(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("update Category c set c.parentCategory = null where c.user.userID = :user")
+    int clearParentsByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Category c where c.user.userID = :user")
+    int deleteAllByUserID(@Param("user") Long user);
 }
@@ -4,10 +4,16 @@ import com.photos.api.models.Photo;
 import com.photos.api.models.User;
 import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.enums.ShareState;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,4 +53,99 @@ public interface PhotoRepository extends JpaRepository<Photo, Long> {
     List<Photo> findAllByShareStateAndPhotoStateAndOwner(ShareState aPrivate, PhotoState archived, User user);
 
     List<Photo> findAllByShareStateAndPhotoStateAndHasCategoryAndOwner(ShareState aPrivate, PhotoState archived, boolean has, User user);
+
+    @Query("select p from Photo p where p.shareState = :ss and p.photoState = :ps " +
+            "order by p.uploadTime desc, p.photoID desc")
+    List<Photo> findNewest(@Param("ss") ShareState ss, @Param("ps") PhotoState ps, Pageable pageable);
+
+    @Query("select p from Photo p where p.shareState = :ss and p.photoState = :ps " +
+            "and (p.uploadTime < :time or (p.uploadTime = :time and p.photoID < :id)) " +
+            "order by p.uploadTime desc, p.photoID desc")
+    List<Photo> findNewestAfter(@Param("ss") ShareState ss, @Param("ps") PhotoState ps, @Param("time") Timestamp time, @Param("id") Long id, Pageable pageable);
+
+    @Query("select p from Photo p where p.shareState = :ss and p.photoState = :ps " +
+            "order by p.rateCount desc, p.photoID desc")
+    List<Photo> findMostRated(@Param("ss") ShareState ss, @Param("ps") PhotoState ps, Pageable pageable);
+
+    @Query("select p from Photo p where p.shareState = :ss and p.photoState = :ps " +
+            "and (p.rateCount < :rate or (p.rateCount = :rate and p.photoID < :id)) " +
+            "order by p.rateCount desc, p.photoID desc")
+    List<Photo> findMostRatedAfter(@Param("ss") ShareState ss, @Param("ps") PhotoState ps, @Param("rate") long rate, @Param("id") Long id, Pageable pageable);
+
+    List<Photo> findAllByPhotoIDInAndShareStateAndPhotoStateOrderByPhotoID(Collection<Long> ids, ShareState ss, PhotoState photoState);
+
+    @Query("select p.photoID from Photo p where p.photoID in :ids and p.photoState <> :deleted")
+    List<Long> findExistingIDs(@Param("ids") Collection<Long> ids, @Param("deleted") PhotoState deleted);
+
+    @Query("select p.photoID, o.email, p.path from Photo p join p.owner o where p.photoState = :ps order by p.photoID")
+    List<Object[]> findIDsOwnerEmailsAndPaths(@Param("ps") PhotoState ps, Pageable pageable);
+
+    @Query("select p.photoID, p.path, o.email from Photo p join p.owner o " +
+            "where p.photoID > :after and p.photoState <> :deleted and p.path is not null order by p.photoID")
+    List<Object[]> findIDsPathsAndOwnerEmails(@Param("after") Long after, @Param("deleted") PhotoState deleted, Pageable pageable);
+
+    @Query("select p.photoID, p.path from Photo p " +
+            "where p.photoID > :after and p.photoState <> :deleted and p.path is not null order by p.photoID")
+    List<Object[]> findIDsAndPaths(@Param("after") Long after, @Param("deleted") PhotoState deleted, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update Photo p set p.path = :hash where p.photoID = :id and p.path = :path")
+    int replacePath(@Param("id") Long id, @Param("path") String path, @Param("hash") String hash);
+
+    @Query("select p.path from Photo p where p.photoID in :ids and p.photoState = :ps and p.path is not null")
+    List<String> findPathsByIDsAndPhotoState(@Param("ids") Collection<Long> ids, @Param("ps") PhotoState ps);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Photo p where p.photoID in :ids and p.photoState = :ps")
+    int deleteAllByIDsAndPhotoState(@Param("ids") Collection<Long> ids, @Param("ps") PhotoState ps);
+
+    boolean existsByOwnerAndPathAndPhotoStateNot(User owner, String path, PhotoState ps);
+
+    @Query("select count(p) from Photo p where p.owner.userID = :owner")
+    long countByOwnerID(@Param("owner") Long owner);
+
+    @Transactional
+    @Modifying
+    @Query("update Photo p set p.photoState = :ps where p.owner.userID = :owner and p.photoState <> :ps")
+    int setPhotoStateByOwnerID(@Param("owner") Long owner, @Param("ps") PhotoState ps);
+
+    @Query("select p.photoID from Photo p where p.owner = :owner")
+    List<Long> findIDsByOwner(@Param("owner") User owner);
+
+    @Query("select distinct p from PhotoToCategory ptc join ptc.photo p " +
+            "where ptc.category.categoryID in :categories and p.owner = :owner and p.photoState = :ps " +
+            "order by p.uploadTime desc, p.photoID desc")
+    List<Photo> findByAnyCategory(@Param("categories") Collection<Long> categories, @Param("owner") User owner, @Param("ps") PhotoState ps, Pageable pageable);
+
+    @Query("select p from Photo p where p.owner = :owner and p.photoState = :ps and p.photoID in " +
+            "(select ptc.photo.photoID from PhotoToCategory ptc where ptc.category.categoryID in :categories " +
+            "group by ptc.photo.photoID having count(distinct ptc.category.categoryID) = :n) " +
+            "order by p.uploadTime desc, p.photoID desc")
+    List<Photo> findByAllCategories(@Param("categories") Collection<Long> categories, @Param("n") long n, @Param("owner") User owner, @Param("ps") PhotoState ps, Pageable pageable);
+
+    @Query("select distinct p from PhotoToCategory ptc join ptc.photo p " +
+            "where ptc.category.categoryID in (select cc.descendant from CategoryClosure cc where cc.ancestor = :category) " +
+            "and p.owner = :owner and p.photoState = :ps " +
+            "order by p.uploadTime desc, p.photoID desc")
+    List<Photo> findByCategoryTree(@Param("category") Long category, @Param("owner") User owner, @Param("ps") PhotoState ps, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update Photo p set p.hasCategory = :has where p.photoID in :ids")
+    int setHasCategory(@Param("ids") Collection<Long> ids, @Param("has") boolean has);
+
+    @Query("select p.photoID, p.uploadTime from Photo p where p.shareState = :ss and p.photoState = :ps")
+    List<Object[]> findUploadTimes(@Param("ss") ShareState ss, @Param("ps") PhotoState ps);
+
+    @Transactional
+    @Modifying
+    @Query("update Photo p set p.rateCount = p.rateCount + :delta where p.photoID = :id")
+    int addRateCount(@Param("id") Long id, @Param("delta") long delta);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update photo p set p.rate_count = (select count(*) from rate r where r.photo = p.id)", nativeQuery = true)
+    int recountRates();
 }
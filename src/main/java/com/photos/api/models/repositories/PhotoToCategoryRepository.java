@@ -4,7 +4,12 @@ import com.photos.api.models.Category;
 import com.photos.api.models.Photo;
 import com.photos.api.models.PhotoToCategory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -21,9 +26,29 @@ public interface PhotoToCategoryRepository extends JpaRepository<PhotoToCategory
 
     void deleteAllByPhoto(Photo photoID);
 
-    List<PhotoToCategory> findAllByCategoryIn(List<Category> categories);
-
     List<PhotoToCategory> findAllByCategory(Category categories);
 
     PhotoToCategory findFirstByPhoto(Photo photo);
+
+    @Query("select distinct ptc.photo.photoID from PhotoToCategory ptc where ptc.category.categoryID in :categories")
+    List<Long> findPhotoIDsByCategories(@Param("categories") Collection<Long> categories);
+
+    @Query("select distinct ptc.photo.photoID from PhotoToCategory ptc where ptc.photo.photoID in :photos")
+    List<Long> findCategorizedPhotoIDs(@Param("photos") Collection<Long> photos);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PhotoToCategory ptc where ptc.category.categoryID in " +
+            "(select c.categoryID from Category c where c.user.userID = :user)")
+    int deleteAllByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PhotoToCategory ptc where ptc.photo.photoID in :ids")
+    int deleteAllByPhotoIDs(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PhotoToCategory ptc where ptc.category.categoryID in :categories")
+    int deleteAllByCategories(@Param("categories") Collection<Long> categories);
 }
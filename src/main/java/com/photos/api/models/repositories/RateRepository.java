@@ -3,9 +3,17 @@ package com.photos.api.models.repositories;
 import com.photos.api.models.Photo;
 import com.photos.api.models.Rate;
 import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -23,4 +31,28 @@ public interface RateRepository extends JpaRepository<Rate, Long> {
     Rate findByPhotoAndUser(Photo photo, User user);
 
     void deleteAllByPhoto(Photo photo);
+
+    @Query("select r.date from Rate r where r.photo.photoID = :photo")
+    List<Timestamp> findDatesByPhotoID(@Param("photo") Long photo);
+
+    @Query("select r.photo.photoID, r.date from Rate r where r.user.userID = :user")
+    List<Object[]> findPhotoIDsAndDatesByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Rate r where r.user.userID = :user")
+    int deleteAllByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Rate r where r.photo.photoID in :ids")
+    int deleteAllByPhotoIDs(@Param("ids") Collection<Long> ids);
+
+    @Query("select r.photo.photoID, count(r) from Rate r " +
+            "where r.photo.shareState = :ss and r.photo.photoState = :ps group by r.photo.photoID")
+    List<Object[]> countByPhoto(@Param("ss") ShareState ss, @Param("ps") PhotoState ps);
+
+    @Query("select r.photo.photoID, r.date from Rate r " +
+            "where r.photo.shareState = :ss and r.photo.photoState = :ps and r.date > :since")
+    List<Object[]> findDatesSince(@Param("ss") ShareState ss, @Param("ps") PhotoState ps, @Param("since") Timestamp since);
 }
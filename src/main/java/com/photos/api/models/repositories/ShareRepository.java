@@ -4,8 +4,13 @@ import com.photos.api.models.Photo;
 import com.photos.api.models.Share;
 import com.photos.api.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -23,5 +28,15 @@ public interface ShareRepository extends JpaRepository<Share, Long> {
 
     void deleteAllByPhoto(Photo photo);
 
+    @Transactional
+    @Modifying
+    @Query("delete from Share s where s.user.userID = :user or s.owner.userID = :user")
+    int deleteAllByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Share s where s.photo.photoID in :ids")
+    int deleteAllByPhotoIDs(@Param("ids") Collection<Long> ids);
+
     Share findByPhotoAndUserAndOwner(Photo photo, User user, User owner);
 }
@@ -4,8 +4,13 @@ import com.photos.api.models.Photo;
 import com.photos.api.models.Tag;
 import com.photos.api.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -33,4 +38,32 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
     void deleteAllByPhoto(Photo photo);
 
     Tag findByPhotoAndName(Photo photo, String name);
+
+    @Query("select t from Tag t join fetch t.photo join fetch t.user where t.photo.photoID in :ids")
+    List<Tag> findAllByPhotoIDIn(@Param("ids") List<Long> ids);
+
+    @Query("select t.name, t.photo.photoID from Tag t")
+    List<Object[]> findNamesAndPhotoIDs();
+
+    @Query("select t.name, t.user.userID from Tag t")
+    List<Object[]> findNamesAndUserIDs();
+
+    @Query("select t.name, t.photo.photoID, t.user.userID from Tag t where t.photo.photoID in :ids")
+    List<Object[]> findNamesPhotoIDsAndUserIDs(@Param("ids") Collection<Long> ids);
+
+    @Query("select t.name, t.photo.photoID from Tag t where t.user.userID = :user")
+    List<Object[]> findNamesAndPhotoIDsByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Tag t where t.user.userID = :user")
+    int deleteAllByUserID(@Param("user") Long user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Tag t where t.photo.photoID in :ids")
+    int deleteAllByPhotoIDs(@Param("ids") Collection<Long> ids);
+
+    @Query("select t.photo.photoID, t.name from Tag t where t.photo.photoID in :ids and t.name in :names")
+    List<Object[]> findPhotoIDsAndNames(@Param("ids") Collection<Long> ids, @Param("names") Collection<String> names);
 }
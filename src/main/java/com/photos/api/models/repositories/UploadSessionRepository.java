@@ -0,0 +1,31 @@
+package com.photos.api.models.repositories;
+
+import com.photos.api.models.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * @version 1.0
+ */
+
+@Component
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    UploadSession findByIdAndUserID(String id, Long userID);
+
+    UploadSession findFirstByPhotoIDAndUserID(Long photoID, Long userID);
+
+    List<UploadSession> findAllByUpdatedBefore(Timestamp updated);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadSession s where s.userID = :user")
+    int deleteAllByUserID(@Param("user") Long user);
+}
@@ -0,0 +1,47 @@
+package com.photos.api.security;
+
+import com.photos.api.models.User;
+import com.photos.api.models.enums.Role;
+import com.photos.api.models.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dostep do zalogowanego uzytkownika z kontekstu bezpieczenstwa.
+ *
+ * @version 1.0
+ */
+
+@Component
+public class CurrentUser {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public String getEmail() {
+        return principal().getUsername();
+    }
+
+    /**
+     * Zwraca referencje do zalogowanego uzytkownika. Dla tokenow z claimem uid jest to leniwe proxy,
+     * ktore trafia do bazy dopiero przy odczycie pol innych niz id
+     *
+     * @return
+     */
+    public User getUser() {
+        org.springframework.security.core.userdetails.User principal = principal();
+        if (principal instanceof UserPrincipal) {
+            return userRepository.getOne(((UserPrincipal) principal).getUserID());
+        }
+        return userRepository.findByEmail(principal.getUsername());
+    }
+
+    public boolean hasRole(final Role role) {
+        return principal().getAuthorities().stream().anyMatch(authority -> role.getText().equals(authority.getAuthority()));
+    }
+
+    private org.springframework.security.core.userdetails.User principal() {
+        return (org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+    }
+}
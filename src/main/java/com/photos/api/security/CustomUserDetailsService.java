@@ -1,10 +1,10 @@
 package com.photos.api.security;
 
+import com.photos.api.models.enums.DeletionPhase;
+import com.photos.api.models.repositories.AccountDeletionRepository;
 import com.photos.api.models.repositories.UserRepository;
-import io.jsonwebtoken.Jwts;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.AuthorityUtils;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -13,9 +13,6 @@ import org.springframework.stereotype.Component;
 import java.sql.Timestamp;
 import java.util.Date;
 
-import static com.photos.api.security.SecurityConstants.SECRET;
-import static com.photos.api.security.SecurityConstants.TOKEN_PREFIX;
-
 /**
  * @author Micha Królewski on 2018-04-21.
  * @version x
@@ -30,21 +27,48 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private TokenRepository tokenRepository;
 
-    public boolean isTokenActive(String token) {
-        Token isActive = tokenRepository.findByToken(token);
-        return isActive == null;
+    @Autowired
+    private AccountDeletionRepository accountDeletionRepository;
+
+    @Autowired
+    private TokenBlacklist tokenBlacklist;
+
+    @Autowired
+    private TokenClaimsCache tokenClaimsCache;
+
+    @Autowired
+    private DeletedAccounts deletedAccounts;
+
+    /**
+     * @param tokenDigest {TokenDigest.sha256 tokenu}
+     * @return
+     */
+    public boolean isTokenActive(String tokenDigest) {
+        return !tokenBlacklist.isRevoked(tokenDigest);
+    }
+
+    /**
+     * @param userID {claim uid tokenu}
+     * @return {false, gdy konto jest usuwane albo zostalo usuniete}
+     */
+    public boolean isUserActive(Long userID) {
+        return !deletedAccounts.contains(userID);
     }
 
     public boolean destroyToken(String token) {
         try {
-            Date expiration = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token.replace(TOKEN_PREFIX, ""))
-                    .getBody().getExpiration();
+            String tokenHash = TokenDigest.sha256(token);
+            Date expiration = tokenClaimsCache.getClaims(token, tokenHash).getExpiration();
 
-            Token destroyedToken = new Token();
+            if (!tokenRepository.existsByTokenHash(tokenHash)) {
+                Token destroyedToken = new Token();
 
-            destroyedToken.setExpiration(Timestamp.from(expiration.toInstant()));
-            destroyedToken.setToken(token);
-            tokenRepository.save(destroyedToken);
+                destroyedToken.setExpiration(Timestamp.from(expiration.toInstant()));
+                destroyedToken.setTokenHash(tokenHash);
+                tokenRepository.save(destroyedToken);
+            }
+            tokenBlacklist.revoke(tokenHash, expiration.getTime());
+            tokenClaimsCache.invalidate(tokenHash);
         } catch (Exception e) {
             return false;
         }
@@ -55,8 +79,11 @@ public class CustomUserDetailsService implements UserDetailsService {
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
 
         com.photos.api.models.User user = userRepository.findByEmail(email);
+        if (user != null && accountDeletionRepository.existsByEmailAndPhaseNot(email, DeletionPhase.DONE)) {
+            return null;
+        }
         // TODO: 2018-04-21 passwordEncoder
-        return user != null ? new User(user.getEmail(), user.getPassword(),
-                AuthorityUtils.createAuthorityList(user.getRole())) : null;
+        return user != null ? new UserPrincipal(user.getEmail(), user.getPassword(),
+                AuthorityUtils.createAuthorityList(user.getRole()), user.getUserID()) : null;
     }
 }
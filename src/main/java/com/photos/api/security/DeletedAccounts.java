@@ -0,0 +1,52 @@
+package com.photos.api.security;
+
+import com.photos.api.models.enums.DeletionPhase;
+import com.photos.api.models.repositories.AccountDeletionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.photos.api.security.SecurityConstants.EXPIRATION_TIME;
+
+/**
+ * Id uzytkownikow, ktorych konta sa usuwane albo zostaly usuniete niedawno.
+ * Tokeny z claimem uid sa sprawdzane bez zapytania do bazy, wiec filtr odrzuca je na podstawie tej listy.
+ * Konta usuniete dawniej niz czas zycia tokenu wypadaja z listy, bo zaden wazny token juz ich nie wskazuje.
+ * Zmiany z innych instancji sa doczytywane okresowo.
+ *
+ * @version 1.0
+ */
+
+@Component
+public class DeletedAccounts {
+
+    @Autowired
+    private AccountDeletionRepository accountDeletionRepository;
+
+    private volatile Set<Long> userIDs;
+
+    public boolean contains(final Long userID) {
+        if (userIDs == null) {
+            sync();
+        }
+        return userIDs.contains(userID);
+    }
+
+    public synchronized void add(final Long userID) {
+        if (userIDs != null) {
+            userIDs.add(userID);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${photos.account-deletion.sync-interval:10000}")
+    public synchronized void sync() {
+        Set<Long> fresh = ConcurrentHashMap.newKeySet();
+        fresh.addAll(accountDeletionRepository.findUserIDsByPhaseNotOrUpdatedAfter(DeletionPhase.DONE,
+                new Timestamp(System.currentTimeMillis() - EXPIRATION_TIME)));
+        userIDs = fresh;
+    }
+}
@@ -1,7 +1,9 @@
 package com.photos.api.security;
 
+import io.jsonwebtoken.Claims;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
@@ -14,7 +16,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 import static com.photos.api.security.SecurityConstants.JWT;
-import static com.photos.api.security.SecurityConstants.getLoggedUserEmail;
+import static com.photos.api.security.SecurityConstants.ROLE;
+import static com.photos.api.security.SecurityConstants.USER_ID;
 
 /**
  * @author Micha Królewski on 2018-04-21.
@@ -25,10 +28,12 @@ import static com.photos.api.security.SecurityConstants.getLoggedUserEmail;
 public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
 
     private final CustomUserDetailsService customUserDetailsService;
+    private final TokenClaimsCache tokenClaimsCache;
 
-    public JwtAuthorizationFilter(AuthenticationManager authenticationManager, CustomUserDetailsService customUserDetailsService) {
+    public JwtAuthorizationFilter(AuthenticationManager authenticationManager, CustomUserDetailsService customUserDetailsService, TokenClaimsCache tokenClaimsCache) {
         super(authenticationManager);
         this.customUserDetailsService = customUserDetailsService;
+        this.tokenClaimsCache = tokenClaimsCache;
     }
 
     @Override
@@ -64,24 +69,38 @@ public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
         customUserDetailsService.destroyToken(token);
     }
 
+    /**
+     * Odtwarza uzytkownika z claimow uid i role tokenu, bez zapytania do bazy.
+     * Dla starszych tokenow bez tych claimow wczytuje uzytkownika po adresie email
+     */
     private UsernamePasswordAuthenticationToken getAuthenticationToken(Cookie[] cookies) {
 
-        String email = "";
-        String token = "";
+        Claims claims = null;
+        String digest = null;
         for (Cookie cookie : cookies) {
             if (cookie.getName().equals(JWT)) {
-                email = getLoggedUserEmail(cookie);
-                token = cookie.getValue();
-                System.out.println(email.toUpperCase());
+                String token = cookie.getValue();
+                if (token != null) {
+                    // jeden skrot na zadanie, jako klucz cache claimow i blacklisty
+                    digest = TokenDigest.sha256(token);
+                    claims = tokenClaimsCache.getClaims(token, digest);
+                }
                 break;
             }
         }
 
-        if (customUserDetailsService.isTokenActive(token)) {
-            if (email.equals("")) {
+        if (digest != null && customUserDetailsService.isTokenActive(digest)) {
+            if (claims == null || claims.getSubject() == null || claims.getSubject().equals("")) {
+                return null;
+            }
+            Number userID = claims.get(USER_ID, Number.class);
+            String role = claims.get(ROLE, String.class);
+            if (userID != null && !customUserDetailsService.isUserActive(userID.longValue())) {
                 return null;
             }
-            UserDetails userDetails = customUserDetailsService.loadUserByUsername(email);
+            UserDetails userDetails = userID != null && role != null ?
+                    new UserPrincipal(claims.getSubject(), "", AuthorityUtils.createAuthorityList(role), userID.longValue()) :
+                    customUserDetailsService.loadUserByUsername(claims.getSubject());
             return userDetails != null ? new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()) : null;
         }
         return null;
@@ -23,11 +23,13 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     private final CustomUserDetailsService customUserDetailsService;
     private BCryptPasswordEncoder bCryptPasswordEncoder;
     private UserRepository userRepository;
+    private TokenClaimsCache tokenClaimsCache;
 
-    public SecurityConfig(CustomUserDetailsService customUserDetailsService, BCryptPasswordEncoder bCryptPasswordEncoder,UserRepository userRepository) {
+    public SecurityConfig(CustomUserDetailsService customUserDetailsService, BCryptPasswordEncoder bCryptPasswordEncoder,UserRepository userRepository, TokenClaimsCache tokenClaimsCache) {
         this.customUserDetailsService = customUserDetailsService;
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
         this.userRepository = userRepository;
+        this.tokenClaimsCache = tokenClaimsCache;
 
     }
 
@@ -37,10 +39,12 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         httpSecurity.cors().and().csrf().disable()
                 .authorizeRequests()
                 .antMatchers(HttpMethod.GET, "*/users/all").hasAuthority("ADMIN")
+                .antMatchers(HttpMethod.GET, "/images/cache/**").hasAuthority("ADMIN")
+                .antMatchers("/images/migration/**").hasAuthority("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .addFilter(new JwtAuthenticationFilter(authenticationManager(),userRepository))
-                .addFilter(new JwtAuthorizationFilter(authenticationManager(), customUserDetailsService))
+                .addFilter(new JwtAuthorizationFilter(authenticationManager(), customUserDetailsService, tokenClaimsCache))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
     }
 
@@ -1,10 +1,11 @@
 package com.photos.api.security;
 
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
-import javax.servlet.http.Cookie;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
@@ -22,6 +23,8 @@ public class SecurityConstants {
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String HEADER_STRING = "Authorization";
     public static final String JWT = "JWT";
+    public static final String USER_ID = "uid";
+    public static final String ROLE = "role";
 
     /**
      * Session time - ~15min
@@ -36,20 +39,15 @@ public class SecurityConstants {
     public static String generateToken(Authentication auth) {
 
         ZonedDateTime expirationTimeUTC = ZonedDateTime.now(ZoneOffset.UTC).plus(EXPIRATION_TIME, ChronoUnit.MILLIS);
-        return Jwts.builder().setSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
-                .setExpiration(Date.from(expirationTimeUTC.toInstant()))
-                .signWith(SignatureAlgorithm.HS256, SECRET)
-                .compact();
-    }
-
-    public static String getLoggedUserEmail(Cookie cookie) {
-
-        String token = cookie.getValue();
-        if (token == null)
-            return null;
-
-        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token.replace(TOKEN_PREFIX, ""))
-                .getBody().getSubject();
+        JwtBuilder builder = Jwts.builder().setSubject(((org.springframework.security.core.userdetails.User) auth.getPrincipal()).getUsername())
+                .setExpiration(Date.from(expirationTimeUTC.toInstant()));
+        if (auth.getPrincipal() instanceof UserPrincipal) {
+            builder.claim(USER_ID, ((UserPrincipal) auth.getPrincipal()).getUserID());
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                builder.claim(ROLE, authority.getAuthority());
+            }
+        }
+        return builder.signWith(SignatureAlgorithm.HS256, SECRET).compact();
     }
 
 }
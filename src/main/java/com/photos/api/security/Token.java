@@ -11,7 +11,7 @@ import java.sql.Timestamp;
  */
 
 @Entity
-@Table(name = "blacklist")
+@Table(name = "blacklist", indexes = @Index(name = "blacklist_expiration", columnList = "expiration"))
 public class Token {
 
     @Id
@@ -23,6 +23,12 @@ public class Token {
     @Column(name = "token")
     private String token;
 
+    /**
+     * Skrot SHA-256 tokenu; nowe wpisy nie zapisuja juz pelnej tresci JWT
+     */
+    @Column(name = "token_hash", length = 64, unique = true)
+    private String tokenHash;
+
     @Column(name = "expiration")
     private Timestamp expiration;
 
@@ -42,6 +48,14 @@ public class Token {
         this.token = token;
     }
 
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
     public Timestamp getExpiration() {
         return expiration;
     }
@@ -0,0 +1,119 @@
+package com.photos.api.security;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uniewaznione tokeny trzymane w pamieci.
+ * <p>
+ * Filtr Blooma odpowiada bez dostepu do mapy dla zdecydowanej wiekszosci tokenow, ktore nie sa na liscie;
+ * mapa skrot tokenu -> czas wygasniecia rozstrzyga pozostale. Wpisy znikaja po wygasnieciu tokenu,
+ * a filtr jest wtedy budowany od nowa (z filtra Blooma nie da sie usuwac).
+ * Nowe wiersze tabeli blacklist (np. z innych instancji) sa doczytywane okresowo. Wiersz z nizszym id
+ * moze zostac zatwierdzony po wierszu z wyzszym, wiec kazdy odczyt zaczyna sie od najwyzszego id
+ * widzianego co najmniej sync-overlap temu, a nie od ostatniego.
+ *
+ * @version 1.0
+ */
+
+@Component
+public class TokenBlacklist {
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Value("${photos.blacklist.expected-tokens:100000}")
+    private int expectedTokens;
+
+    @Value("${photos.blacklist.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${photos.blacklist.sync-overlap:300000}")
+    private long overlap;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter<CharSequence> filter;
+    private volatile boolean loaded;
+    private long fromId;
+    private long lastId;
+
+    /**
+     * Pary {czas odczytu, najwyzsze id widziane do tej chwili}
+     */
+    private final Deque<long[]> marks = new ArrayDeque<>();
+
+    /**
+     * @param digest {TokenDigest.sha256 tokenu}
+     * @return
+     */
+    public boolean isRevoked(final String digest) {
+        if (!loaded) {
+            sync();
+        }
+        if (!filter.mightContain(digest)) {
+            return false;
+        }
+        Long expiration = revoked.get(digest);
+        return expiration != null && expiration > System.currentTimeMillis();
+    }
+
+    public synchronized void revoke(final String digest, final long expiration) {
+        if (!loaded) {
+            return;
+        }
+        add(digest, expiration);
+    }
+
+    /**
+     * Doczytuje nowe wiersze blacklisty i usuwa wygasle wpisy
+     */
+    @Scheduled(fixedDelayString = "${photos.blacklist.sync-interval:10000}")
+    public synchronized void sync() {
+        if (!loaded) {
+            filter = newFilter();
+        }
+
+        long now = System.currentTimeMillis();
+        for (Token token : tokenRepository.findAllByIdGreaterThan(fromId)) {
+            lastId = Math.max(lastId, token.getId());
+            String digest = token.getTokenHash() != null ? token.getTokenHash() :
+                    token.getToken() != null ? TokenDigest.sha256(token.getToken()) : null;
+            if (digest != null && token.getExpiration() != null && token.getExpiration().getTime() > now) {
+                add(digest, token.getExpiration().getTime());
+            }
+        }
+        loaded = true;
+
+        marks.addLast(new long[]{now, lastId});
+        while (!marks.isEmpty() && marks.peekFirst()[0] <= now - overlap) {
+            fromId = marks.pollFirst()[1];
+        }
+
+        if (revoked.values().removeIf(expiration -> expiration <= now)) {
+            BloomFilter<CharSequence> fresh = newFilter();
+            for (String digest : revoked.keySet()) {
+                fresh.put(digest);
+            }
+            filter = fresh;
+        }
+    }
+
+    private void add(String digest, long expiration) {
+        revoked.put(digest, expiration);
+        filter.put(digest);
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(Charsets.US_ASCII), Math.max(expectedTokens, revoked.size() * 2), falsePositiveRate);
+    }
+}
@@ -0,0 +1,68 @@
+package com.photos.api.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+import static com.photos.api.security.SecurityConstants.EXPIRATION_TIME;
+import static com.photos.api.security.SecurityConstants.SECRET;
+import static com.photos.api.security.SecurityConstants.TOKEN_PREFIX;
+
+/**
+ * Cache zweryfikowanych claimow JWT. Kolejne zadania z tym samym tokenem
+ * pomijaja dekodowanie base64, parsowanie JSON i sprawdzanie podpisu HMAC.
+ * <p>
+ * Kluczem jest skrot SHA-256 tokenu, liczony raz na zadanie w filtrze i uzywany tez przez
+ * TokenBlacklist, wiec pelne tokeny nie zostaja w pamieci. Wpis jest uzywany najdalej do chwili exp tokenu.
+ *
+ * @version 1.0
+ */
+
+@Component
+public class TokenClaimsCache {
+
+    @Value("${photos.jwt.claims-cache-size:10000}")
+    private long maximumSize;
+
+    private Cache<String, Claims> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRATION_TIME, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Zwraca claimy tokenu, przy braku w cache weryfikuje podpis i zapamietuje wynik
+     *
+     * @param token {tresc tokenu, z przedrostkiem Bearer lub bez}
+     * @param digest {TokenDigest.sha256 tokenu}
+     * @return
+     * @throws io.jsonwebtoken.JwtException {gdy token jest niepoprawny lub wygasl}
+     */
+    public Claims getClaims(final String token, final String digest) {
+        Claims claims = cache.getIfPresent(digest);
+        if (claims != null) {
+            if (claims.getExpiration() == null || claims.getExpiration().getTime() > System.currentTimeMillis()) {
+                return claims;
+            }
+            cache.invalidate(digest);
+        }
+
+        claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token.replace(TOKEN_PREFIX, "")).getBody();
+        cache.put(digest, claims);
+        return claims;
+    }
+
+    public void invalidate(final String digest) {
+        cache.invalidate(digest);
+    }
+}
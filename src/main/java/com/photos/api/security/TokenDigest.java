@@ -0,0 +1,25 @@
+package com.photos.api.security;
+
+import com.photos.api.services.Sha256;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Skrot SHA-256 tokenu, uzywany jako klucz zamiast pelnej tresci JWT.
+ *
+ * @version 1.0
+ */
+
+public final class TokenDigest {
+
+    private TokenDigest() {
+    }
+
+    /**
+     * @param token
+     * @return {skrot SHA-256 w postaci 64 znakow hex}
+     */
+    public static String sha256(String token) {
+        return Sha256.hex(Sha256.newDigest().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,40 @@
+package com.photos.api.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+
+/**
+ * Okresowo usuwa z tabeli blacklist wygasle tokeny. Kasuje po batch-size wierszy
+ * w osobnych transakcjach, zeby nie blokowac tabeli na dlugo.
+ *
+ * @version 1.0
+ */
+
+@Component
+public class TokenReaper {
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Value("${photos.blacklist.purge-batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * @return {liczba usunietych wierszy}
+     */
+    @Scheduled(fixedDelayString = "${photos.blacklist.purge-interval:3600000}")
+    public long purge() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        long total = 0;
+        int deleted;
+        do {
+            deleted = tokenRepository.deleteExpired(now, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+}
@@ -1,8 +1,15 @@
 package com.photos.api.security;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.util.List;
+
 /**
  * @author Micha Królewski on 2018-05-27.
  * @version x
@@ -10,5 +17,12 @@ import org.springframework.stereotype.Component;
 
 @Component
 public interface TokenRepository extends JpaRepository<Token, Long> {
-    Token findByToken(String token);
+    boolean existsByTokenHash(String tokenHash);
+
+    List<Token> findAllByIdGreaterThan(Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from blacklist where expiration < :now limit :limit", nativeQuery = true)
+    int deleteExpired(@Param("now") Timestamp now, @Param("limit") int limit);
 }
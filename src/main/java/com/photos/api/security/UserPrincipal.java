@@ -0,0 +1,28 @@
+package com.photos.api.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Zalogowany uzytkownik wraz z jego id, odtwarzany z claimow JWT bez zapytania do bazy.
+ *
+ * @version 1.0
+ */
+
+public class UserPrincipal extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long userID;
+
+    public UserPrincipal(String email, String password, Collection<? extends GrantedAuthority> authorities, Long userID) {
+        super(email, password, authorities);
+        this.userID = userID;
+    }
+
+    public Long getUserID() {
+        return userID;
+    }
+}
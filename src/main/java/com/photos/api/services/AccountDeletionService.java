@@ -0,0 +1,291 @@
+package com.photos.api.services;
+
+import com.photos.api.models.AccountDeletion;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.DeletionPhase;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.Role;
+import com.photos.api.models.repositories.*;
+import com.photos.api.security.CurrentUser;
+import com.photos.api.security.CustomUserDetailsService;
+import com.photos.api.security.DeletedAccounts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Usuwanie konta jako zadanie w tle. Zadanie zwraca od razu wpis account_deletion,
+ * a kolejne etapy (DeletionPhase) sa wykonywane okresowo i zapisywane po kazdym kroku,
+ * wiec po restarcie aplikacji zadanie jest wznawiane od ostatniego etapu. Kazdy etap mozna powtorzyc.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class AccountDeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountDeletionService.class);
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private AccountDeletionRepository accountDeletionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository closureRepository;
+
+    @Autowired
+    private PhotoToCategoryRepository ptcRepository;
+
+    @Autowired
+    private ShareRepository shareRepository;
+
+    @Autowired
+    private RateRepository rateRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private PhotoReclaimer photoReclaimer;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private DeletedAccounts deletedAccounts;
+
+    @Autowired
+    private CategoryTreeService categoryTreeService;
+
+    @Autowired
+    private HotRankingService hotRankingService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private RateCountBuffer rateCountBuffer;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private TagCompletion tagCompletion;
+
+    @Value("${photos.account-deletion.file-threads:4}")
+    private int fileThreads;
+
+    private ForkJoinPool filePool;
+
+    @PostConstruct
+    public void init() {
+        filePool = new ForkJoinPool(fileThreads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        filePool.shutdown();
+    }
+
+    /**
+     * Zleca usuniecie konta zalogowanego uzytkownika. Zdjecia od razu znikaja z widokow
+     * (stan DELETED), reszta danych jest usuwana w tle. Token zadania jest uniewazniany,
+     * a pozostale tokeny uzytkownika odrzuca filtr, wiec nie powstana juz nowe dane konta
+     *
+     * @param token {token zadania}
+     * @return {zadanie usuwania, takze wczesniej zlecone}
+     */
+    public AccountDeletion request(final String token) {
+        User user = currentUser.getUser();
+        Long userID = user.getUserID();
+        deletedAccounts.add(userID);
+
+        AccountDeletion deletion = accountDeletionRepository.findFirstByUserIDAndPhaseNot(userID, DeletionPhase.DONE);
+        if (deletion != null) {
+            return deletion;
+        }
+
+        for (Long id : photoRepository.findIDsByOwner(user)) {
+            hotRankingService.onRemoved(id);
+            trendingService.onRemoved(id);
+        }
+        photoRepository.setPhotoStateByOwnerID(userID, PhotoState.DELETED);
+        categoryTreeService.invalidate(user);
+
+        deletion = accountDeletionRepository.save(new AccountDeletion(userID, currentUser.getEmail(), photoRepository.countByOwnerID(userID)));
+        customUserDetailsService.destroyToken(token);
+        return deletion;
+    }
+
+    /**
+     * @param id
+     * @return {zadanie lub null, gdy nie istnieje albo nalezy do innego uzytkownika}
+     */
+    public AccountDeletion getDeletion(final Long id) {
+        AccountDeletion deletion = accountDeletionRepository.findById(id).orElse(null);
+        if (deletion == null) {
+            return null;
+        }
+        return deletion.getEmail().equals(currentUser.getEmail()) || currentUser.hasRole(Role.ADMIN) ? deletion : null;
+    }
+
+    @Scheduled(fixedDelayString = "${photos.account-deletion.interval:10000}")
+    public synchronized void run() {
+        for (AccountDeletion deletion : accountDeletionRepository.findAllByPhaseNotOrderById(DeletionPhase.DONE)) {
+            try {
+                process(deletion);
+            } catch (Exception e) {
+                // etap zostanie powtorzony przy nastepnym uruchomieniu
+                log.warn("Account deletion {} failed in phase {}", deletion.getId(), deletion.getPhase(), e);
+            }
+        }
+    }
+
+    private void process(AccountDeletion deletion) throws IOException {
+        Long userID = deletion.getUserID();
+
+        if (deletion.getPhase() == DeletionPhase.PHOTOS) {
+            photoRepository.setPhotoStateByOwnerID(userID, PhotoState.DELETED);
+            photoReclaimer.reclaim();
+            long remaining = photoRepository.countByOwnerID(userID);
+            deletion.setPhotosDeleted(deletion.getPhotosTotal() - remaining);
+            if (remaining > 0) {
+                save(deletion);
+                return;
+            }
+            advance(deletion, DeletionPhase.DATA);
+        }
+
+        if (deletion.getPhase() == DeletionPhase.DATA) {
+            deleteData(userID);
+            advance(deletion, DeletionPhase.FILES);
+        }
+
+        if (deletion.getPhase() == DeletionPhase.FILES) {
+            deleteDirectory(ImageService.userDirectory(deletion.getEmail()));
+            advance(deletion, DeletionPhase.USER);
+        }
+
+        if (deletion.getPhase() == DeletionPhase.USER) {
+            if (userRepository.existsById(userID)) {
+                // dane dodane tokenem, ktory byl jeszcze wazny na innej instancji, blokowalyby usuniecie
+                deleteData(userID);
+                userRepository.deleteById(userID);
+            }
+            advance(deletion, DeletionPhase.DONE);
+        }
+    }
+
+    /**
+     * Usuwa zbiorczo dane uzytkownika dotyczace cudzych zdjec oraz jego kategorie
+     *
+     * @param userID
+     */
+    private void deleteData(Long userID) {
+        List<Object[]> tags = tagRepository.findNamesAndPhotoIDsByUserID(userID);
+        tagRepository.deleteAllByUserID(userID);
+        for (Object[] tag : tags) {
+            tagIndex.remove((String) tag[0], (Long) tag[1]);
+            tagCompletion.remove(userID, (String) tag[0]);
+        }
+
+        List<Object[]> rates = rateRepository.findPhotoIDsAndDatesByUserID(userID);
+        rateRepository.deleteAllByUserID(userID);
+        for (Object[] rate : rates) {
+            Long photoID = (Long) rate[0];
+            rateCountBuffer.add(photoID, -1);
+            hotRankingService.onUnrate(photoID, (Timestamp) rate[1]);
+            trendingService.onUnrate(photoID, (Timestamp) rate[1]);
+        }
+
+        shareRepository.deleteAllByUserID(userID);
+        uploadSessionRepository.deleteAllByUserID(userID);
+
+        ptcRepository.deleteAllByUserID(userID);
+        closureRepository.deleteAllByUserID(userID);
+        categoryRepository.clearParentsByUserID(userID);
+        categoryRepository.deleteAllByUserID(userID);
+        categoryTreeService.invalidate(userRepository.getOne(userID));
+    }
+
+    /**
+     * Usuwa pliki katalogu rownolegle we wlasnej puli, potem katalogi od najglebszego
+     *
+     * @param directory
+     * @throws IOException
+     */
+    private void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        List<Path> files;
+        List<Path> directories = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(path -> {
+                if (Files.isDirectory(path)) {
+                    directories.add(path);
+                    return false;
+                }
+                return true;
+            }).collect(Collectors.toList());
+        }
+
+        try {
+            filePool.submit(() -> files.parallelStream().forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (Exception e) {
+            throw new IOException("Could not delete files in " + directory, e);
+        }
+
+        Collections.reverse(directories);
+        for (Path path : directories) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void advance(AccountDeletion deletion, DeletionPhase phase) {
+        deletion.setPhase(phase);
+        save(deletion);
+    }
+
+    private void save(AccountDeletion deletion) {
+        deletion.setUpdated(new Timestamp(System.currentTimeMillis()));
+        accountDeletionRepository.save(deletion);
+    }
+}
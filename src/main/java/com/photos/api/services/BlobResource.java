@@ -0,0 +1,60 @@
+package com.photos.api.services;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Blob z magazynu bez lokalnego pliku (np. S3), czytany strumieniowo w calosci albo zakresami.
+ *
+ * @version 1.0
+ */
+
+public class BlobResource extends AbstractResource {
+
+    private final BlobStore blobStore;
+    private final String key;
+    private Long size;
+
+    public BlobResource(BlobStore blobStore, String key) {
+        this.blobStore = blobStore;
+        this.key = key;
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            return contentLength() >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (size == null) {
+            size = blobStore.size(key);
+        }
+        return size;
+    }
+
+    @Override
+    public String getFilename() {
+        return key;
+    }
+
+    @Override
+    public String getDescription() {
+        return "blob [" + key + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return blobStore.get(key);
+    }
+
+    public InputStream getInputStream(final long start, final long end) throws IOException {
+        return blobStore.get(key, start, end);
+    }
+}
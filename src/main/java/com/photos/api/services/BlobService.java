@@ -0,0 +1,401 @@
+package com.photos.api.services;
+
+import com.google.common.util.concurrent.Striped;
+import com.photos.api.models.Blob;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.repositories.BlobRepository;
+import com.photos.api.models.repositories.PhotoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.photos.api.services.ImageService.UPLOAD_ROOT;
+
+/**
+ * Pliki zdjec adresowane trescia. Tresc trzyma BlobStore pod kluczem SHA-256, a Photo.path
+ * przechowuje ten skrot, wiec ta sama tresc wyslana wiele razy zajmuje miejsce (i cache) raz.
+ * Liczba odwolan jest trzymana w tabeli image_blob i zmieniana w transakcjach zdjec.
+ * <p>
+ * Umieszczenie pliku i usuniecie nieuzywanego bloba dla tego samego skrotu wykluczaja sie
+ * blokada, a oba odswiezaja touched, dzieki czemu collect nie skasuje pliku, ktory wlasnie
+ * zostal uznany za duplikat.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class BlobService {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private ImageCache imageCache;
+
+    @Value("${photos.uploads.max-size:209715200}")
+    private long maxSize;
+
+    @Value("${photos.uploads.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${photos.blobs.grace-period:3600000}")
+    private long gracePeriod;
+
+    @Value("${photos.blobs.collect-batch-size:100}")
+    private int batchSize;
+
+    @Value("${photos.storage.cache-max-size:1073741824}")
+    private long cacheMaxSize;
+
+    @Value("${photos.storage.cache-min-age:60000}")
+    private long cacheMinAge;
+
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    public static boolean isHash(final String path) {
+        return path != null && SHA256.matcher(path).matches();
+    }
+
+    /**
+     * Zwraca lokalny plik bloba: z magazynu lokalnego albo kopie pobrana do {UPLOAD_ROOT}/cache,
+     * potrzebna np. do generowania wersji pomniejszonych. Uzycie kopii odswieza jej date modyfikacji,
+     * wedlug ktorej trimCache usuwa najdawniej uzywane
+     *
+     * @param hash
+     * @return
+     * @throws IOException
+     */
+    public Path localCopy(final String hash) throws IOException {
+        Path path = localCopyPath(hash);
+        if (blobStore.localPath(hash) != null) {
+            return path;
+        }
+        if (Files.exists(path)) {
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {
+                // kopia mogla zostac wlasnie usunieta przez trimCache, wtedy pobieramy ja ponownie
+            }
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), "blob", ".tmp");
+        try {
+            try (InputStream in = blobStore.get(hash)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return path;
+    }
+
+    /**
+     * @param hash
+     * @return {plik lokalny, gdy magazyn jest lokalny, inaczej zasob czytany z magazynu}
+     */
+    public Resource resource(final String hash) {
+        Path path = blobStore.localPath(hash);
+        return path != null ? new FileSystemResource(path.toFile()) : new BlobResource(blobStore, hash);
+    }
+
+    /**
+     * Zleca wersje pomniejszone nowego bloba; dla magazynu zdalnego powstana przy pierwszym zadaniu
+     *
+     * @param hash
+     */
+    public void scheduleRenditions(final String hash) {
+        Path path = blobStore.localPath(hash);
+        if (path != null) {
+            renditionService.schedule(path);
+        }
+    }
+
+    /**
+     * Zapisuje strumien do pliku tymczasowego, liczac przy tym SHA-256, i umieszcza go w magazynie.
+     * Gdy blob o tym skrocie juz istnieje, plik tymczasowy jest usuwany
+     *
+     * @param in
+     * @return {blob lub null, gdy tresc jest pusta albo wieksza niz photos.uploads.max-size}
+     * @throws IOException
+     */
+    public Blob store(final InputStream in) throws IOException {
+        Path temp = blobStore.createTempFile();
+        try {
+            MessageDigest digest = Sha256.newDigest();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(in)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > maxSize) {
+                        return null;
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            return size > 0 ? adopt(temp, Sha256.hex(digest.digest()), size) : null;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Umieszcza w magazynie gotowy plik o znanym skrocie (przenosi go albo usuwa jako duplikat)
+     *
+     * @param file {plik na tym samym dysku co magazyn}
+     * @param hash
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public Blob adopt(final Path file, final String hash, final long size) throws IOException {
+        Lock lock = locks.get(hash);
+        lock.lock();
+        try {
+            blobRepository.touch(hash, size, now());
+            if (blobStore.exists(hash)) {
+                Files.deleteIfExists(file);
+            } else {
+                blobStore.put(hash, file);
+            }
+            return new Blob(hash, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Odswieza istniejacy blob, jesli jego plik jest na miejscu, zeby mozna bylo sie do niego
+     * odwolac bez ponownego wysylania tresci
+     *
+     * @param hash
+     * @return {blob lub null, gdy go nie ma}
+     */
+    public Blob reuse(final String hash) {
+        Lock lock = locks.get(hash);
+        lock.lock();
+        try {
+            Blob blob = blobRepository.findById(hash).orElse(null);
+            if (blob == null || !blobStore.exists(hash)) {
+                return null;
+            }
+            blobRepository.touch(hash, blob.getSize(), now());
+            return blob;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dodaje odwolanie do bloba, w transakcji zapisujacej zdjecie
+     *
+     * @param hash
+     */
+    public void retain(final String hash) {
+        blobRepository.retain(hash, now());
+    }
+
+    /**
+     * Przepina zdjecie ze starego pliku {email}/{id}.jpg na blob i dodaje odwolanie,
+     * o ile sciezka zdjecia nie zmienila sie w miedzyczasie
+     *
+     * @param photoID
+     * @param path {dotychczasowa sciezka zdjecia}
+     * @param hash
+     * @return
+     */
+    @Transactional
+    public boolean adoptLegacy(final Long photoID, final String path, final String hash) {
+        if (photoRepository.replacePath(photoID, path, hash) == 0) {
+            return false;
+        }
+        retain(hash);
+        return true;
+    }
+
+    /**
+     * Usuwa wiersze zdjec DELETED i w tej samej transakcji zwalnia ich bloby,
+     * zeby powtorzona paczka nie zmniejszyla licznikow drugi raz
+     *
+     * @param ids
+     * @return {liczba usunietych zdjec}
+     */
+    @Transactional
+    public int releasePhotos(final Collection<Long> ids) {
+        Timestamp now = now();
+        for (String path : photoRepository.findPathsByIDsAndPhotoState(ids, PhotoState.DELETED)) {
+            if (isHash(path)) {
+                blobRepository.release(path, now);
+            }
+        }
+        return photoRepository.deleteAllByIDsAndPhotoState(ids, PhotoState.DELETED);
+    }
+
+    /**
+     * Usuwa bloby bez odwolan, nieuzywane dluzej niz okres karencji, razem z plikami
+     *
+     * @return {liczba usunietych blobow}
+     */
+    @Scheduled(fixedDelayString = "${photos.blobs.collect-interval:3600000}")
+    public synchronized int collect() {
+        Timestamp before = new Timestamp(System.currentTimeMillis() - gracePeriod);
+        int total = 0;
+        int deleted;
+        List<String> hashes;
+        do {
+            deleted = 0;
+            hashes = blobRepository.findUnreferenced(before, PageRequest.of(0, batchSize));
+            for (String hash : hashes) {
+                Lock lock = locks.get(hash);
+                lock.lock();
+                try {
+                    Blob blob = blobRepository.findById(hash).orElse(null);
+                    if (blob != null && blob.getRefCount() <= 0 && blob.getTouched().before(before)) {
+                        deleteFiles(localCopyPath(hash));
+                        blobStore.delete(hash);
+                        deleted += blobRepository.deleteUnreferenced(hash, before);
+                    }
+                } catch (IOException ignored) {
+                    // wiersz zostaje, blob zostanie usuniety przy nastepnym uruchomieniu
+                } finally {
+                    lock.unlock();
+                }
+            }
+            total += deleted;
+        } while (hashes.size() == batchSize && deleted > 0);
+        return total;
+    }
+
+    /**
+     * Usuwa najdawniej uzywane kopie blobow z {UPLOAD_ROOT}/cache razem z ich wersjami pomniejszonymi,
+     * az laczny rozmiar katalogu zejdzie do photos.storage.cache-max-size. Kopie uzyte w ciagu
+     * photos.storage.cache-min-age zostaja, zeby nie usunac pliku, z ktorego wlasnie powstaje wersja
+     *
+     * @return {liczba usunietych kopii}
+     */
+    @Scheduled(fixedDelayString = "${photos.storage.cache-trim-interval:600000}")
+    public synchronized int trimCache() {
+        Path root = Paths.get(UPLOAD_ROOT, "cache");
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        // skrot -> {rozmiar oryginalu i wersji, ostatnie uzycie}
+        Map<String, long[]> copies = new HashMap<>();
+        long total = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.length() < 64 || !isHash(name.substring(0, 64))) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    long[] copy = copies.computeIfAbsent(name.substring(0, 64), k -> new long[2]);
+                    copy[0] += attributes.size();
+                    copy[1] = Math.max(copy[1], attributes.lastModifiedTime().toMillis());
+                    total += attributes.size();
+                } catch (IOException ignored) {
+                    // plik usuniety w trakcie przegladania
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+
+        List<Map.Entry<String, long[]>> oldest = new ArrayList<>(copies.entrySet());
+        oldest.sort(Comparator.comparingLong(entry -> entry.getValue()[1]));
+        long before = System.currentTimeMillis() - cacheMinAge;
+        int deleted = 0;
+        for (Map.Entry<String, long[]> entry : oldest) {
+            if (total <= cacheMaxSize || entry.getValue()[1] > before) {
+                break;
+            }
+            Lock lock = locks.get(entry.getKey());
+            lock.lock();
+            try {
+                deleteFiles(localCopyPath(entry.getKey()));
+            } finally {
+                lock.unlock();
+            }
+            total -= entry.getValue()[0];
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Usuwa oryginal z wersjami pomniejszonymi i wpisami w cache
+     *
+     * @param original
+     */
+    public void deleteFiles(final Path original) {
+        renditionService.deleteRenditions(original);
+        imageCache.invalidate(original);
+        imageCache.invalidate(renditionService.renditionPaths(original));
+        try {
+            Files.deleteIfExists(original);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private Path localCopyPath(String hash) {
+        Path path = blobStore.localPath(hash);
+        return path != null ? path : Paths.get(UPLOAD_ROOT, "cache", hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+}
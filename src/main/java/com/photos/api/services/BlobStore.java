@@ -0,0 +1,60 @@
+package com.photos.api.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Miejsce przechowywania tresci blobow, wybierane wlasciwoscia photos.storage.type
+ * (local lub s3). Kluczem jest skrot SHA-256 tresci; liczeniem odwolan zajmuje sie BlobService.
+ *
+ * @version 1.0
+ */
+
+public interface BlobStore {
+
+    /**
+     * @return {nowy pusty plik tymczasowy, z ktorego put przeniesie tresc najtaniej}
+     * @throws IOException
+     */
+    Path createTempFile() throws IOException;
+
+    /**
+     * Zapisuje tresc pliku pod kluczem. Plik przechodzi na wlasnosc magazynu i po wywolaniu moze nie istniec
+     *
+     * @param key
+     * @param file
+     * @throws IOException
+     */
+    void put(String key, Path file) throws IOException;
+
+    void put(String key, InputStream in, long length) throws IOException;
+
+    boolean exists(String key);
+
+    /**
+     * @param key
+     * @return {rozmiar w bajtach lub -1, gdy klucza nie ma}
+     * @throws IOException
+     */
+    long size(String key) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    /**
+     * @param key
+     * @param start {pierwszy bajt}
+     * @param end {ostatni bajt, wlacznie}
+     * @return
+     * @throws IOException
+     */
+    InputStream get(String key, long start, long end) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * @param key
+     * @return {sciezka pliku, gdy magazyn jest na lokalnym dysku, inaczej null}
+     */
+    Path localPath(String key);
+}
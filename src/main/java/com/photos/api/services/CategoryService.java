@@ -1,14 +1,28 @@
 package com.photos.api.services;
 
 import com.photos.api.models.Category;
+import com.photos.api.models.CategoryClosure;
+import com.photos.api.models.CategoryNode;
 import com.photos.api.models.User;
+import com.photos.api.models.repositories.CategoryClosureRepository;
 import com.photos.api.models.repositories.CategoryRepository;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.PhotoToCategoryRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * @author Micha Królewski on 2018-04-21.
@@ -18,12 +32,27 @@ import java.util.List;
 @Service
 public class CategoryService {
 
+    @Autowired
+    private CurrentUser currentUser;
+
     @Autowired
     private CategoryRepository categoryRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CategoryClosureRepository closureRepository;
+
+    @Autowired
+    private PhotoToCategoryRepository ptcRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private CategoryTreeService categoryTreeService;
+
     /**
      * Pobiera wszyskie dzieci podanej kategorii
      *
@@ -31,22 +60,41 @@ public class CategoryService {
      * @return
      */
     public List<Category> getAll(final Long parentid) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         Category parent = categoryRepository.findByCategoryIDAndUser(parentid, user);
         List<Category> categories = categoryRepository.findAllByParentCategoryAndUser(parent, user);
         return categories.size() == 0 ? null : categories;
     }
 
+    /**
+     * Pobiera cale drzewo kategorii uzytkownika z liczbami zdjec
+     *
+     * @return
+     */
+    public List<CategoryNode> getTree() {
+        return categoryTreeService.getTree(currentUser.getUser());
+    }
+
+    /**
+     * Pobiera kategorie wraz ze wszystkimi potomkami, od najplytszych
+     *
+     * @param id
+     * @return
+     */
+    public List<Category> getSubtree(final Long id) {
+        List<Category> categories = categoryRepository.findSubtree(id, currentUser.getUser());
+        return categories.size() == 0 ? null : categories;
+    }
+
     /**
      * Dodaje kategorie do bazy
      *
      * @param category
      * @return
      */
+    @Transactional
     public boolean addCategory(Category category) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         if (categoryRepository.findByNameAndParentCategoryAndUser(category.getName(), category.getParentCategory(), user) != null) {
             return false;
@@ -65,34 +113,39 @@ public class CategoryService {
         category.setUser(user);
         try {
             categoryRepository.save(category);
+            addToClosure(category);
         } catch (Exception e) {
             return false;
         }
+        categoryTreeService.invalidate(user);
 
         return true;
 
     }
 
+    @Transactional
     public boolean editCategory(Long id, Category category) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         Category categoryToUpdate = categoryRepository.findByCategoryIDAndUser(id, user);
-        if (category == null) {
+        if (categoryToUpdate == null || category == null) {
             return false;
         }
 
         try {
-            if (categoryToUpdate.getParentCategory() != (category.getParentCategory())) {
-                if (category.getParentCategory() == null) {
+            Long oldParent = categoryToUpdate.getParentCategory() == null ? null : categoryToUpdate.getParentCategory().getCategoryID();
+            Long newParent = category.getParentCategory() == null ? null : category.getParentCategory().getCategoryID();
+            if (!Objects.equals(oldParent, newParent)) {
+                if (newParent == null) {
                     categoryToUpdate.setParentCategory(null);
                 } else {
-                    Category parentCat = categoryRepository.findByCategoryIDAndUser(category.getParentCategory().getCategoryID(), user);
-                    if (parentCat == null && category.getParentCategory() != null) {
+                    Category parentCat = categoryRepository.findByCategoryIDAndUser(newParent, user);
+                    if (parentCat == null || closureRepository.existsByAncestorAndDescendant(id, newParent)) {
                         return false;
                     }
                     categoryToUpdate.setParentCategory(parentCat);
                 }
+                move(id, newParent);
             }
             if (!categoryToUpdate.getName().equals(category.getName()) && category.getName() != null) {
                 categoryToUpdate.setName(category.getName());
@@ -102,6 +155,7 @@ public class CategoryService {
         } catch (Exception e) {
             return false;
         }
+        categoryTreeService.invalidate(user);
         return true;
     }
 
@@ -111,8 +165,9 @@ public class CategoryService {
      * @param id
      * @return
      */
+    @Transactional
     public boolean deleteCategory(Long id) {
-        User user = userRepository.findByEmail(((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername());
+        User user = currentUser.getUser();
 
         if (user == null) {
             return false;
@@ -122,35 +177,79 @@ public class CategoryService {
         if (category == null) {
             return false;
         }
-        List<Category> kids = categoryRepository.findAllByParentCategoryAndUser(category, user);
-        if (kids.size() > 0) {
-            deleteKids(kids, user);
-        }
 
         try {
-            categoryRepository.delete(category);
+            List<Long> subtree = closureRepository.findDescendants(id);
+            if (subtree.isEmpty()) {
+                subtree.add(id);
+            }
+
+            List<Long> photos = ptcRepository.findPhotoIDsByCategories(subtree);
+            ptcRepository.deleteAllByCategories(subtree);
+            if (!photos.isEmpty()) {
+                Set<Long> uncategorized = new HashSet<>(photos);
+                uncategorized.removeAll(ptcRepository.findCategorizedPhotoIDs(photos));
+                if (!uncategorized.isEmpty()) {
+                    photoRepository.setHasCategory(uncategorized, false);
+                }
+            }
+
+            closureRepository.deleteAllByDescendantIn(subtree);
+            categoryRepository.clearParents(subtree);
+            categoryRepository.deleteAllByIDs(subtree);
         } catch (Exception e) {
             return false;
         }
+        categoryTreeService.invalidate(user);
         return true;
-
     }
 
     /**
-     * Rekurencyjnie usuwa potomkow kategorii
+     * Dopisuje nowa kategorie do tabeli domkniecia
      *
-     * @param kids
-     * @param user
+     * @param category {zapisana kategoria}
      */
-    private void deleteKids(List<Category> kids, User user) {
-        List<Category> kids1;
-        for (Category tmpCat : kids) {
-            kids1 = categoryRepository.findAllByParentCategoryAndUser(tmpCat, user);
-            if (kids1 != null) {
-                deleteKids(kids1, user);
-            }
-            categoryRepository.delete(tmpCat);
+    public void addToClosure(final Category category) {
+        closureRepository.insertSelf(category.getCategoryID());
+        if (category.getParentCategory() != null) {
+            closureRepository.insertAncestors(category.getCategoryID(), category.getParentCategory().getCategoryID());
+        }
+    }
+
+    /**
+     * Przenosi poddrzewo kategorii pod nowego rodzica (null = korzen)
+     */
+    private void move(Long id, Long parent) {
+        List<Long> subtree = closureRepository.findDescendants(id);
+        closureRepository.detach(subtree);
+        if (parent != null) {
+            closureRepository.attach(id, parent);
         }
     }
 
+    /**
+     * Buduje tabele domkniecia z kolumny parent_category, gdy jest pusta (np. po migracji)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildClosure() {
+        if (closureRepository.count() > 0) {
+            return;
+        }
+
+        Map<Long, Long> parents = new HashMap<>();
+        for (Object[] row : categoryRepository.findIDsAndParentIDs()) {
+            parents.put((Long) row[0], (Long) row[1]);
+        }
+
+        List<CategoryClosure> rows = new ArrayList<>();
+        for (Long id : parents.keySet()) {
+            Long ancestor = id;
+            for (int depth = 0; ancestor != null && depth <= parents.size(); depth++) {
+                rows.add(new CategoryClosure(ancestor, id, depth));
+                ancestor = parents.get(ancestor);
+            }
+        }
+        closureRepository.saveAll(rows);
+    }
 }
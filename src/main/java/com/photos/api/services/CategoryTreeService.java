@@ -0,0 +1,87 @@
+package com.photos.api.services;
+
+import com.photos.api.models.CategoryNode;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.repositories.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drzewa kategorii uzytkownikow budowane jednym zapytaniem i trzymane w pamieci
+ * do czasu zmiany kategorii lub przypisan zdjec.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class CategoryTreeService {
+
+    private static final Comparator<CategoryNode> BY_NAME = Comparator.comparing(CategoryNode::getName, String.CASE_INSENSITIVE_ORDER);
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private final Map<Long, List<CategoryNode>> trees = new ConcurrentHashMap<>();
+
+    /**
+     * @param user
+     * @return {kategorie glowne uzytkownika z zagniezdzonymi podkategoriami}
+     */
+    public List<CategoryNode> getTree(final User user) {
+        return trees.computeIfAbsent(user.getUserID(), id -> build(user));
+    }
+
+    /**
+     * Usuwa drzewo uzytkownika z pamieci. W transakcji usuwa je ponownie po commicie,
+     * zeby rownolegle zadanie nie zapamietalo stanu sprzed zmiany
+     *
+     * @param user
+     */
+    public void invalidate(final User user) {
+        Long id = user.getUserID();
+        trees.remove(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    trees.remove(id);
+                }
+            });
+        }
+    }
+
+    private List<CategoryNode> build(User user) {
+        Map<Long, CategoryNode> nodes = new HashMap<>();
+        Map<Long, Long> parents = new HashMap<>();
+        for (Object[] row : categoryRepository.findTreeRows(user, PhotoState.ACTIVE)) {
+            Long id = (Long) row[0];
+            nodes.put(id, new CategoryNode(id, (String) row[1], (Long) row[3]));
+            if (row[2] != null) {
+                parents.put(id, (Long) row[2]);
+            }
+        }
+
+        List<CategoryNode> roots = new ArrayList<>();
+        for (CategoryNode node : nodes.values()) {
+            CategoryNode parent = nodes.get(parents.get(node.getCategoryID()));
+            (parent != null ? parent.getChildren() : roots).add(node);
+        }
+        for (CategoryNode node : nodes.values()) {
+            node.getChildren().sort(BY_NAME);
+            node.setChildren(Collections.unmodifiableList(node.getChildren()));
+        }
+        roots.sort(BY_NAME);
+        return Collections.unmodifiableList(roots);
+    }
+}
@@ -0,0 +1,390 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Photo;
+import com.photos.api.models.PhotoCursor;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.RateRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ranking HOT publicznych zdjec trzymany w pamieci.
+ * <p>
+ * Wynik zdjecia to log(sum(2^((t - EPOCH) / halfLife))) po chwili dodania zdjecia i datach jego ocen,
+ * wiec ocena sprzed jednego okresu polowicznego zaniku wazy polowe nowej oceny.
+ * Dzieki zapisowi w logarytmie wynikow nie trzeba przeliczac w miare uplywu czasu,
+ * a kazda ocena zmienia wynik jednego zdjecia w stalym czasie.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class HotRankingService {
+
+    /**
+     * Poczatek skali czasu dla wag, 2018-01-01 UTC
+     */
+    private static final long EPOCH = 1514764800000L;
+
+    /**
+     * Oceny starsze niz tyle okresow polowicznego zaniku sa pomijane przy przebudowie (waga < 2^-20)
+     */
+    private static final int HORIZON_HALF_LIVES = 20;
+
+    /**
+     * Rodzaj kursora z wynikiem z rankingu, odrozniajacy go od kursora PhotoService.HOT_CURSOR_MODE
+     */
+    public static final String CURSOR_MODE = "score";
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private RateRepository rateRepository;
+
+    @Value("${photos.hot.half-life-hours:12}")
+    private double halfLifeHours;
+
+    @Value("${photos.hot.capacity:1000}")
+    private int capacity;
+
+    private volatile Ranking ranking = new Ranking();
+    private volatile boolean ready;
+
+    /**
+     * Zdjecia zmienione zdarzeniami w trakcie przebudowy, null gdy przebudowa nie trwa
+     */
+    private Set<Long> changed;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Zwraca strone rankingu bez odwolan do bazy
+     *
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getHot(final Pageable pageable) {
+        return collect(ranking, ranking.top, pageable.getOffset(), pageable.getPageSize());
+    }
+
+    /**
+     * @param after {kursor z cursor(); kursor innego rodzaju zaczyna od poczatku rankingu}
+     * @param size
+     * @return
+     */
+    public List<Photo> getHot(final PhotoCursor after, final int size) {
+        if (after == null || !CURSOR_MODE.equals(after.getMode())) {
+            return getHot(PageRequest.of(0, size));
+        }
+        Ranking current = ranking;
+        Ranked from = new Ranked(Double.longBitsToDouble(after.getValue()), after.getId());
+        return collect(current, current.top.tailSet(from, false), 0, size);
+    }
+
+    /**
+     * @param photoId
+     * @return {kursor wskazujacy na zdjecie lub null gdy zdjecia nie ma w rankingu}
+     */
+    public PhotoCursor cursor(final Long photoId) {
+        Double score = ranking.scores.get(photoId);
+        return score == null ? null : new PhotoCursor(CURSOR_MODE, Double.doubleToLongBits(score), photoId);
+    }
+
+    public int getLikes(final Photo photo) {
+        AtomicInteger likes = ranking.likes.get(photo.getPhotoID());
+        return likes == null ? 0 : likes.get();
+    }
+
+    public synchronized void onRate(final Photo photo, final Timestamp date) {
+        Double score = ranking.scores.get(photo.getPhotoID());
+        if (score == null) {
+            return;
+        }
+        ranking.likes.computeIfAbsent(photo.getPhotoID(), k -> new AtomicInteger()).incrementAndGet();
+        update(ranking, photo.getPhotoID(), logAdd(score, weight(date.getTime())), photo);
+        markChanged(photo.getPhotoID());
+    }
+
+    public void onUnrate(final Photo photo, final Timestamp date) {
+        onUnrate(photo.getPhotoID(), date);
+    }
+
+    public synchronized void onUnrate(final Long photoId, final Timestamp date) {
+        Double score = ranking.scores.get(photoId);
+        if (score == null) {
+            return;
+        }
+        AtomicInteger likes = ranking.likes.get(photoId);
+        if (likes != null) {
+            likes.decrementAndGet();
+        }
+        update(ranking, photoId, logSub(score, weight(date.getTime())), null);
+        markChanged(photoId);
+    }
+
+    /**
+     * Dodaje lub odswieza zdjecie, ktore stalo sie publiczne i aktywne. Daty ocen sa czytane przed blokada
+     *
+     * @param photo
+     */
+    public void onPublished(final Photo photo) {
+        List<Timestamp> dates = rateRepository.findDatesByPhotoID(photo.getPhotoID());
+        synchronized (this) {
+            publish(ranking, photo, dates);
+            markChanged(photo.getPhotoID());
+        }
+    }
+
+    public synchronized void onRemoved(final Long photoId) {
+        remove(ranking, photoId);
+        markChanged(photoId);
+    }
+
+    /**
+     * Przelicza caly ranking z bazy. Koryguje wyniki zdjec, ktore wypadly z top-K
+     * i zmiany, ktore nie przeszly przez zdarzenia. Zdjecia zmienione zdarzeniami w trakcie
+     * przebudowy sa przeliczane w nowym rankingu ponownie, az do podmiany pod blokada nie zostanie zadne
+     */
+    @Scheduled(fixedDelayString = "${photos.hot.rebuild-interval:1800000}")
+    public void rebuild() {
+        synchronized (this) {
+            changed = new HashSet<>();
+        }
+        try {
+            Ranking fresh = build();
+            while (true) {
+                Set<Long> ids;
+                synchronized (this) {
+                    if (changed.isEmpty()) {
+                        ranking = fresh;
+                        ready = true;
+                        return;
+                    }
+                    ids = changed;
+                    changed = new HashSet<>();
+                }
+                for (Long id : ids) {
+                    refresh(fresh, id);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                changed = null;
+            }
+        }
+    }
+
+    private Ranking build() {
+        Ranking fresh = new Ranking();
+
+        for (Object[] row : photoRepository.findUploadTimes(ShareState.PUBLIC, PhotoState.ACTIVE)) {
+            fresh.scores.put((Long) row[0], weight(((Timestamp) row[1]).getTime()));
+        }
+
+        long horizon = System.currentTimeMillis() - (long) (HORIZON_HALF_LIVES * halfLifeHours * 3_600_000);
+        for (Object[] row : rateRepository.findDatesSince(ShareState.PUBLIC, PhotoState.ACTIVE, new Timestamp(horizon))) {
+            Double score = fresh.scores.get(row[0]);
+            if (score != null) {
+                fresh.scores.put((Long) row[0], logAdd(score, weight(((Timestamp) row[1]).getTime())));
+            }
+        }
+
+        for (Object[] row : rateRepository.countByPhoto(ShareState.PUBLIC, PhotoState.ACTIVE)) {
+            fresh.likes.put((Long) row[0], new AtomicInteger(((Long) row[1]).intValue()));
+        }
+
+        List<Ranked> all = new ArrayList<>();
+        for (Map.Entry<Long, Double> entry : fresh.scores.entrySet()) {
+            all.add(new Ranked(entry.getValue(), entry.getKey()));
+        }
+        Collections.sort(all);
+        List<Ranked> top = all.subList(0, Math.min(capacity, all.size()));
+
+        List<Long> ids = new ArrayList<>();
+        for (Ranked ranked : top) {
+            ids.add(ranked.id);
+        }
+        if (!ids.isEmpty()) {
+            for (Photo photo : photoRepository.findAllById(ids)) {
+                fresh.photos.put(photo.getPhotoID(), photo);
+            }
+        }
+        for (Ranked ranked : top) {
+            if (fresh.photos.containsKey(ranked.id)) {
+                fresh.top.add(ranked);
+                fresh.size++;
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Ustawia zdjecie w rankingu wedlug jego biezacego stanu w bazie
+     */
+    private void refresh(Ranking target, Long photoId) {
+        Photo photo = photoRepository.findById(photoId).orElse(null);
+        if (photo == null || photo.getShareState() != ShareState.PUBLIC || photo.getPhotoState() != PhotoState.ACTIVE) {
+            remove(target, photoId);
+        } else {
+            publish(target, photo, rateRepository.findDatesByPhotoID(photoId));
+        }
+    }
+
+    private void publish(Ranking target, Photo photo, List<Timestamp> dates) {
+        double score = weight(photo.getUploadTime().getTime());
+        for (Timestamp date : dates) {
+            score = logAdd(score, weight(date.getTime()));
+        }
+        target.likes.put(photo.getPhotoID(), new AtomicInteger(dates.size()));
+        target.photos.remove(photo.getPhotoID());
+        update(target, photo.getPhotoID(), score, photo);
+    }
+
+    private void remove(Ranking target, Long photoId) {
+        Double score = target.scores.remove(photoId);
+        target.likes.remove(photoId);
+        if (score != null && target.top.remove(new Ranked(score, photoId))) {
+            target.size--;
+        }
+        target.photos.remove(photoId);
+    }
+
+    private void markChanged(Long photoId) {
+        if (changed != null) {
+            changed.add(photoId);
+        }
+    }
+
+    private void update(final Ranking current, final Long photoId, final double score, final Photo photo) {
+        Double old = current.scores.put(photoId, score);
+        if (old != null && current.top.remove(new Ranked(old, photoId))) {
+            current.size--;
+        }
+
+        Ranked ranked = new Ranked(score, photoId);
+        if (current.size >= capacity && ranked.compareTo(current.top.last()) > 0) {
+            current.photos.remove(photoId);
+            return;
+        }
+
+        Photo snapshot = current.photos.get(photoId);
+        if (snapshot == null) {
+            snapshot = photo != null ? photo : photoRepository.findById(photoId).orElse(null);
+        }
+        if (snapshot == null) {
+            return;
+        }
+        current.photos.put(photoId, snapshot);
+        current.top.add(ranked);
+        current.size++;
+
+        while (current.size > capacity) {
+            Ranked last = current.top.pollLast();
+            current.photos.remove(last.id);
+            current.size--;
+        }
+    }
+
+    private List<Photo> collect(Ranking current, NavigableSet<Ranked> from, long skip, int size) {
+        List<Photo> page = new ArrayList<>();
+        for (Ranked ranked : from) {
+            if (page.size() >= size) {
+                break;
+            }
+            Photo photo = current.photos.get(ranked.id);
+            if (photo == null) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            page.add(photo);
+        }
+        return page;
+    }
+
+    /**
+     * @param time
+     * @return {logarytm wagi zdarzenia z chwili time}
+     */
+    private double weight(long time) {
+        return (time - EPOCH) * Math.log(2) / (halfLifeHours * 3_600_000);
+    }
+
+    /**
+     * @return {log(e^a + e^b)}
+     */
+    private static double logAdd(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+
+    /**
+     * @return {log(e^a - e^b)}, dla b >= a (blad numeryczny) zwraca a do czasu przebudowy
+     */
+    private static double logSub(double a, double b) {
+        if (b >= a) {
+            return a;
+        }
+        return a + Math.log1p(-Math.exp(b - a));
+    }
+
+    /**
+     * Stan rankingu podmieniany w calosci przy przebudowie
+     */
+    private static class Ranking {
+        private final Map<Long, Double> scores = new ConcurrentHashMap<>();
+        private final Map<Long, AtomicInteger> likes = new ConcurrentHashMap<>();
+        private final Map<Long, Photo> photos = new ConcurrentHashMap<>();
+        private final NavigableSet<Ranked> top = new ConcurrentSkipListSet<>();
+        private int size;
+    }
+
+    private static class Ranked implements Comparable<Ranked> {
+        private final double score;
+        private final long id;
+
+        Ranked(double score, long id) {
+            this.score = score;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Ranked o) {
+            int byScore = Double.compare(o.score, score);
+            return byScore != 0 ? byScore : Long.compare(o.id, id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Ranked && compareTo((Ranked) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + Double.hashCode(score);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.photos.api.services;
+
+import com.photos.api.models.ImageCacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU zawartosci plikow zdjec w buforach poza sterta (direct ByteBuffer),
+ * ograniczony laczna liczba bajtow. Pliki wieksze niz max-entry-bytes sa zawsze czytane z dysku.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class ImageCache {
+
+    @Value("${photos.image-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${photos.image-cache.max-entry-bytes:1048576}")
+    private long maxEntryBytes;
+
+    private final LinkedHashMap<Path, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Zwraca zawartosc pliku z cache, przy chybieniu wczytuje ja, jesli plik jest dosc maly
+     *
+     * @param path
+     * @return {bufor tylko do odczytu lub null, gdy plik trzeba wyslac z dysku}
+     */
+    public ByteBuffer get(final Path path) {
+        synchronized (this) {
+            ByteBuffer buffer = entries.get(path);
+            if (buffer != null) {
+                hits.incrementAndGet();
+                return buffer.duplicate();
+            }
+        }
+        misses.incrementAndGet();
+
+        try {
+            long size = Files.size(path);
+            if (size > maxEntryBytes || size > maxBytes) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                }
+            }
+            buffer.flip();
+            ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+            put(path, readOnly);
+            return readOnly.duplicate();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized void invalidate(final Path path) {
+        ByteBuffer removed = entries.remove(path);
+        if (removed != null) {
+            bytes -= removed.capacity();
+        }
+    }
+
+    public void invalidate(final Collection<Path> paths) {
+        for (Path path : paths) {
+            invalidate(path);
+        }
+    }
+
+    public synchronized ImageCacheStats getStats() {
+        return new ImageCacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), bytes, maxBytes);
+    }
+
+    private synchronized void put(Path path, ByteBuffer buffer) {
+        ByteBuffer old = entries.put(path, buffer);
+        if (old != null) {
+            bytes -= old.capacity();
+        }
+        bytes += buffer.capacity();
+
+        Iterator<Map.Entry<Path, ByteBuffer>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().capacity();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Blob;
+import com.photos.api.models.ImageMigrationStats;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.repositories.PhotoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Przenosi stare pliki {UPLOAD_ROOT}/{email}/{id}.jpg do magazynu blobow (podzielonego na katalogi
+ * wedlug skrotu), paczkami w kolejnosci id i rownolegle we wlasnej puli. Dziala przy pracujacej
+ * aplikacji: findImage czyta oba uklady, a zdjecie jest przepinane na blob warunkowo, dopiero
+ * po zapisaniu tresci, wiec przerwane przenoszenie mozna po prostu uruchomic ponownie.
+ * Stary plik od bloba odroznia tylko isLegacy (po stronie Javy, bo JPQL nie sprawdzi wzorca skrotu),
+ * a zapytania wybieraja wszystkie zdjecia ze sciezka.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class ImageMigrationService {
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Value("${photos.migration.threads:4}")
+    private int threads;
+
+    @Value("${photos.migration.batch-size:100}")
+    private int batchSize;
+
+    @Value("${photos.migration.count-batch-size:5000}")
+    private int countBatchSize;
+
+    private ExecutorService runner;
+    private ForkJoinPool filePool;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong legacy = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        runner = Executors.newSingleThreadExecutor();
+        filePool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        runner.shutdownNow();
+        filePool.shutdownNow();
+    }
+
+    /**
+     * Uruchamia przenoszenie w tle
+     *
+     * @return {false, gdy przenoszenie juz trwa}
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        migrated.set(0);
+        missing.set(0);
+        failed.set(0);
+        legacy.set(countLegacy());
+        runner.execute(() -> {
+            try {
+                migrateAll();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return {w trakcie przenoszenia pozostale wyliczone z licznika z chwili startu, inaczej policzone od nowa}
+     */
+    public ImageMigrationStats getStats() {
+        long remaining = running.get() ? Math.max(0, legacy.get() - migrated.get()) : countLegacy();
+        return new ImageMigrationStats(running.get(), migrated.get(), missing.get(), failed.get(), remaining);
+    }
+
+    /**
+     * Sciezka zdjecia, ktore nie wskazuje jeszcze bloba; jedyne kryterium dla przenoszenia i liczenia
+     *
+     * @param path
+     * @return
+     */
+    static boolean isLegacy(final String path) {
+        return path != null && !BlobService.isHash(path);
+    }
+
+    private long countLegacy() {
+        long count = 0;
+        Long after = 0L;
+        List<Object[]> rows;
+        do {
+            rows = photoRepository.findIDsAndPaths(after, PhotoState.DELETED, PageRequest.of(0, countBatchSize));
+            for (Object[] row : rows) {
+                if (isLegacy((String) row[1])) {
+                    count++;
+                }
+            }
+            if (!rows.isEmpty()) {
+                after = (Long) rows.get(rows.size() - 1)[0];
+            }
+        } while (rows.size() == countBatchSize);
+        return count;
+    }
+
+    private void migrateAll() {
+        Long after = 0L;
+        List<Object[]> rows;
+        do {
+            rows = photoRepository.findIDsPathsAndOwnerEmails(after, PhotoState.DELETED, PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) {
+                return;
+            }
+            List<Object[]> batch = rows.stream().filter(row -> isLegacy((String) row[1])).collect(Collectors.toList());
+            try {
+                filePool.submit(() -> batch.parallelStream().forEach(this::migrate)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                return;
+            }
+            after = (Long) rows.get(rows.size() - 1)[0];
+        } while (rows.size() == batchSize);
+    }
+
+    /**
+     * Zapisuje kopie pliku jako blob, przepina na niego zdjecie i dopiero wtedy usuwa stary plik
+     * z wersjami pomniejszonymi. Gdy przepiecie sie nie uda, blob bez odwolan usunie BlobService.collect
+     *
+     * @param row {id zdjecia, sciezka, email wlasciciela}
+     */
+    private void migrate(Object[] row) {
+        Long id = (Long) row[0];
+        Path file = ImageService.imagePath((String) row[2], id);
+        if (!Files.exists(file)) {
+            missing.incrementAndGet();
+            return;
+        }
+        try {
+            Blob blob;
+            try (InputStream in = Files.newInputStream(file)) {
+                blob = blobService.store(in);
+            }
+            if (blob == null || !blobService.adoptLegacy(id, (String) row[1], blob.getHash())) {
+                failed.incrementAndGet();
+                return;
+            }
+            blobService.deleteFiles(file);
+            blobService.scheduleRenditions(blob.getHash());
+            migrated.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package com.photos.api.services;
 
+import com.photos.api.models.Blob;
 import com.photos.api.models.Photo;
 import com.photos.api.models.User;
 import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.enums.ShareState;
 import com.photos.api.models.repositories.PhotoRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.transaction.Transactional;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
@@ -25,50 +30,87 @@ import java.nio.file.Paths;
 @Service
 public class ImageService {
 
-    public static String UPLOAD_ROOT = System.getProperty("user.dir") + "\\..\\imageStore";
+    @Autowired
+    private CurrentUser currentUser;
+
+    public static String UPLOAD_ROOT = Paths.get(System.getProperty("user.dir")).resolveSibling("imageStore").toString();
     private final ResourceLoader resourceLoader;
     private final PhotoRepository photoRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private BlobService blobService;
+
     public ImageService(ResourceLoader resourceLoader, PhotoRepository photoRepository) {
         this.resourceLoader = resourceLoader;
         this.photoRepository = photoRepository;
     }
 
 
-    public Resource findImage(Long id) {
+    public Resource findImage(Long id) throws IOException {
+        return findImage(id, null);
+    }
+
+    /**
+     * Zwraca plik zdjecia lub jego pomniejszona wersje, generujac ja przy pierwszym zadaniu
+     *
+     * @param id
+     * @param size {zadany dluzszy bok w pikselach, null dla oryginalu}
+     * @return
+     */
+    public Resource findImage(Long id, Integer size) throws IOException {
         Photo photo = photoRepository.findByPhotoIDAndPhotoStateAndShareState(id, PhotoState.ACTIVE, ShareState.PUBLIC);
 
         if (photo == null) {
-            String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-            User user = userRepository.findByEmail(email);
+            User user = currentUser.getUser();
             photo = photoRepository.findByPhotoIDAndPhotoStateAndShareStateAndOwner(id, PhotoState.ACTIVE, ShareState.PRIVATE, user);
             if (photo == null) {
                 return null;
             }
         }
-        return resourceLoader.getResource("file:" + UPLOAD_ROOT + "\\" + photo.getowner_email() + "\\" + photo.getPhotoID() + ".jpg");
+        Integer rendition = size != null ? renditionService.snap(size) : null;
+        if (BlobService.isHash(photo.getPath())) {
+            Resource original = blobService.resource(photo.getPath());
+            if (rendition == null || !original.exists()) {
+                return original;
+            }
+            return new FileSystemResource(renditionService.getRendition(blobService.localCopy(photo.getPath()), rendition).toFile());
+        }
+
+        Path path = imagePath(photo.getowner_email(), photo.getPhotoID());
+        if (rendition != null && Files.exists(path)) {
+            path = renditionService.getRendition(path, rendition);
+        }
+        return resourceLoader.getResource("file:" + path);
     }
 
+    @Transactional
     public boolean createImage(MultipartFile file, Long id) {
 
         if (!file.isEmpty()) {
             try {
 
-                String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-                User user = userRepository.findByEmail(email);
-                String name = file.getOriginalFilename();
+                User user = currentUser.getUser();
                 Photo photo = photoRepository.findByPhotoIDAndOwner(id, user);
-                if (photo.getPath() != null) {
+                if (photo.getPath() != null || photo.getPhotoState() == PhotoState.DELETED) {
+                    return false;
+                }
+                Blob blob = blobService.store(file.getInputStream());
+                if (blob == null) {
                     return false;
                 }
-                photo.setPath(id.toString());
+                photo.setPath(blob.getHash());
                 photoRepository.save(photo);
+                blobService.retain(blob.getHash());
 
-                Files.copy(file.getInputStream(), Paths.get(UPLOAD_ROOT + "\\" + email + "\\", id.toString() + ".jpg"));
+                blobService.scheduleRenditions(blob.getHash());
             } catch (Exception e) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
                 return false;
             }
         }
@@ -78,7 +120,15 @@ public class ImageService {
 
     public void deleteImage(String filename) throws IOException {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        Files.deleteIfExists(Paths.get(UPLOAD_ROOT + "\\" + email + "\\", filename));
+        String email = currentUser.getEmail();
+        Files.deleteIfExists(userDirectory(email).resolve(filename));
+    }
+
+    public static Path userDirectory(String email) {
+        return Paths.get(UPLOAD_ROOT, email);
+    }
+
+    public static Path imagePath(String email, Long id) {
+        return userDirectory(email).resolve(id.toString() + ".jpg");
     }
 }
@@ -0,0 +1,107 @@
+package com.photos.api.services;
+
+import com.google.common.io.ByteStreams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static com.photos.api.services.ImageService.UPLOAD_ROOT;
+
+/**
+ * Bloby na lokalnym dysku w katalogach ab/cd/{klucz}, zeby pojedynczy katalog nie rosl bez konca.
+ * Domyslnie w {UPLOAD_ROOT}/blobs.
+ *
+ * @version 1.0
+ */
+
+@Component
+@ConditionalOnProperty(name = "photos.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    @Value("${photos.storage.local.root:}")
+    private String root;
+
+    @Override
+    public Path createTempFile() throws IOException {
+        Path directory = root().resolve("tmp");
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, "upload", ".tmp");
+    }
+
+    @Override
+    public void put(final String key, final Path file) throws IOException {
+        Path target = localPath(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path temp = createTempFile();
+            try {
+                Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public void put(final String key, final InputStream in, final long length) throws IOException {
+        Path temp = createTempFile();
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            put(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return Files.exists(localPath(key));
+    }
+
+    @Override
+    public long size(final String key) throws IOException {
+        Path path = localPath(key);
+        return Files.exists(path) ? Files.size(path) : -1;
+    }
+
+    @Override
+    public InputStream get(final String key) throws IOException {
+        return Files.newInputStream(localPath(key));
+    }
+
+    @Override
+    public InputStream get(final String key, final long start, final long end) throws IOException {
+        FileChannel channel = FileChannel.open(localPath(key), StandardOpenOption.READ);
+        channel.position(start);
+        return ByteStreams.limit(Channels.newInputStream(channel), end - start + 1);
+    }
+
+    @Override
+    public void delete(final String key) throws IOException {
+        Files.deleteIfExists(localPath(key));
+    }
+
+    @Override
+    public Path localPath(final String key) {
+        return root().resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private Path root() {
+        return root.isEmpty() ? Paths.get(UPLOAD_ROOT, "blobs") : Paths.get(root);
+    }
+}
@@ -0,0 +1,99 @@
+package com.photos.api.services;
+
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.PhotoToCategoryRepository;
+import com.photos.api.models.repositories.RateRepository;
+import com.photos.api.models.repositories.ShareRepository;
+import com.photos.api.models.repositories.TagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fizycznie usuwa zdjecia oznaczone jako DELETED: paczkami kasuje zbiorczo powiazane wiersze,
+ * stare pliki z wersjami, a na koncu same zdjecia, zwalniajac ich bloby (pliki blobow usuwa
+ * BlobService.collect). Kazdy krok mozna powtorzyc, wiec przerwana paczka zostanie dokonczona
+ * przy nastepnym uruchomieniu.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class PhotoReclaimer {
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private PhotoToCategoryRepository ptcRepository;
+
+    @Autowired
+    private ShareRepository shareRepository;
+
+    @Autowired
+    private RateRepository rateRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private TagCompletion tagCompletion;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Value("${photos.reclaimer.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * @return {liczba usunietych zdjec}
+     */
+    @Scheduled(fixedDelayString = "${photos.reclaimer.interval:10000}")
+    public synchronized int reclaim() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = reclaimBatch();
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+
+    private int reclaimBatch() {
+        List<Object[]> rows = photoRepository.findIDsOwnerEmailsAndPaths(PhotoState.DELETED, PageRequest.of(0, batchSize));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ids.add((Long) row[0]);
+        }
+
+        List<Object[]> tags = tagRepository.findNamesPhotoIDsAndUserIDs(ids);
+        ptcRepository.deleteAllByPhotoIDs(ids);
+        shareRepository.deleteAllByPhotoIDs(ids);
+        rateRepository.deleteAllByPhotoIDs(ids);
+        tagRepository.deleteAllByPhotoIDs(ids);
+        for (Object[] tag : tags) {
+            tagIndex.remove((String) tag[0], (Long) tag[1]);
+            tagCompletion.remove((Long) tag[2], (String) tag[0]);
+        }
+
+        for (Object[] row : rows) {
+            if (!BlobService.isHash((String) row[2])) {
+                blobService.deleteFiles(ImageService.imagePath((String) row[1], (Long) row[0]));
+            }
+        }
+
+        return blobService.releasePhotos(ids);
+    }
+}
@@ -4,20 +4,21 @@ import com.photos.api.models.*;
 import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.enums.ShareState;
 import com.photos.api.models.repositories.*;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.transaction.Transactional;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-
-import static com.photos.api.services.ImageService.UPLOAD_ROOT;
+import java.util.Set;
 
 /**
  * @author Micha Królewski on 2018-04-14.
@@ -28,8 +29,13 @@ import static com.photos.api.services.ImageService.UPLOAD_ROOT;
 @Service
 public class PhotoService {
 
+    /**
+     * Rodzaj kursora feedu hot liczonego w bazie, wartoscia jest liczba ocen
+     */
+    public static final String HOT_CURSOR_MODE = "rates";
+
     @Autowired
-    private RateRepository rateRepository;
+    private CurrentUser currentUser;
 
     @Autowired
     private PhotoRepository photoRepository;
@@ -38,149 +44,197 @@ public class PhotoService {
     private UserRepository userRepository;
 
     @Autowired
-    private TagRepository tagRepository;
+    private ShareRepository shareRepository;
 
     @Autowired
-    private ShareRepository shareRepository;
+    private CategoryRepository categoryRepository;
 
     @Autowired
-    private PhotoToCategoryRepository ptcRepository;
+    private HotRankingService hotRankingService;
 
     @Autowired
-    private CategoryRepository categoryRepository;
+    private TrendingService trendingService;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private CategoryTreeService categoryTreeService;
+
+    @Autowired
+    private BlobService blobService;
 
     public List<Photo> getAll() {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         List<Photo> photos = photoRepository.findAllByOwnerAndPhotoState(user, PhotoState.ACTIVE);
         return photos;
     }
 
-    public List<Photo> getByCategoryAny(List<Category> categories) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
-
-
-        List<PhotoToCategory> ptcs = ptcRepository.findAllByCategoryIn(categories);
-
-        Map<Long, Photo> list = new HashMap<>();
-        List<Photo> photos = new ArrayList<>();
-        for (PhotoToCategory ptc : ptcs) {
-            list.put(ptc.getPhoto().getPhotoID(), ptc.getPhoto());
-        }
-        for (Map.Entry<Long, Photo> entry : list.entrySet()) {
-            photos.add(entry.getValue());
+    /**
+     * Zwraca zdjecia uzytkownika nalezace do dowolnej z kategorii, od najnowszego
+     *
+     * @param categories
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getByCategoryAny(final List<Category> categories, final Pageable pageable) {
+        Set<Long> ids = categoryIDs(categories);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
-        return photos;
+        return photoRepository.findByAnyCategory(ids, currentUser.getUser(), PhotoState.ACTIVE, pageable);
     }
 
-    public List<Photo> getByCategoryAll(List<Category> categories) {
+    /**
+     * Zwraca zdjecia uzytkownika nalezace do wszystkich kategorii, od najnowszego
+     *
+     * @param categories
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getByCategoryAll(final List<Category> categories, final Pageable pageable) {
+        Set<Long> ids = categoryIDs(categories);
+        if (ids.isEmpty() || categories.contains(null)) {
+            return new ArrayList<>();
+        }
+        return photoRepository.findByAllCategories(ids, ids.size(), currentUser.getUser(), PhotoState.ACTIVE, pageable);
+    }
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+    /**
+     * Zwraca zdjecia uzytkownika z kategorii i wszystkich jej podkategorii, od najnowszego
+     *
+     * @param categoryId
+     * @param pageable
+     * @return {lista zdjec lub null, gdy kategoria nie nalezy do uzytkownika}
+     */
+    public List<Photo> getByCategoryTree(final Long categoryId, final Pageable pageable) {
+        User user = currentUser.getUser();
+        if (categoryRepository.findByCategoryIDAndUser(categoryId, user) == null) {
+            return null;
+        }
+        return photoRepository.findByCategoryTree(categoryId, user, PhotoState.ACTIVE, pageable);
+    }
 
-        List<Photo> photos = new ArrayList<>();
-        List<PhotoToCategory> ptcs = ptcRepository.findAllByCategoryIn(categories);
-        ptcs.sort((o1, o2) -> o1.getPhoto().getPhotoID().compareTo(o2.getPhoto().getPhotoID()));
-
-        int counter = 0;
-        long lastId = 0;
-        for (PhotoToCategory ptc : ptcs) {
-            if (lastId == ptc.getPhoto().getPhotoID()) {
-                counter++;
-            } else {
-                lastId = ptc.getPhoto().getPhotoID();
-                counter = 1;
-            }
-            if (counter == categories.size()) {
-                photos.add(ptc.getPhoto());
+    private static Set<Long> categoryIDs(List<Category> categories) {
+        Set<Long> ids = new HashSet<>();
+        for (Category category : categories) {
+            if (category != null) {
+                ids.add(category.getCategoryID());
             }
         }
-        return photos;
+        return ids;
     }
 
     public List<Photo> getPublic() {
         return photoRepository.findAllByShareStateAndPhotoState(ShareState.PUBLIC, PhotoState.ACTIVE);
     }
 
-    public List<Photo> getTrending() {
-        System.out.println(new Timestamp(System.currentTimeMillis() - 259_200_000));
-        return photoRepository.findAllByShareStateAndPhotoStateAndUploadTimeGreaterThan(ShareState.PUBLIC, PhotoState.ACTIVE, new Timestamp(System.currentTimeMillis() - 259200));
+    /**
+     * Zwraca publiczne zdjecia od najnowszego, stronicowane w bazie
+     *
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getFresh(final Pageable pageable) {
+        return photoRepository.findNewest(ShareState.PUBLIC, PhotoState.ACTIVE, pageable);
     }
 
-    private List<Tag> getTagObjects(List<Tag> tags) {
-        List<Tag> ret = new ArrayList<>();
-        for (Tag tag : tags) {
-            List<Tag> tmp = tagRepository.findAllByName(tag.getName());
-            ret.addAll(tmp);
+    public List<Photo> getFresh(final PhotoCursor after, final int size) {
+        if (after == null) {
+            return getFresh(PageRequest.of(0, size));
         }
-        ret.sort((o1, o2) -> o1.getPhoto().getPhotoID().compareTo(o2.getPhoto().getPhotoID()));
+        return photoRepository.findNewestAfter(ShareState.PUBLIC, PhotoState.ACTIVE,
+                new Timestamp(after.getValue()), after.getId(), PageRequest.of(0, size));
+    }
 
-        return ret;
+    /**
+     * Zwraca publiczne zdjecia od najczesciej ocenianego, stronicowane w bazie
+     *
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getHot(final Pageable pageable) {
+        return photoRepository.findMostRated(ShareState.PUBLIC, PhotoState.ACTIVE, pageable);
     }
 
-    public List<Photo> getByTagsAll(List<Tag> tagss, ShareState shareState) {
+    /**
+     * @param after {kursor z liczba ocen; kursor innego rodzaju zaczyna od pierwszej strony}
+     * @param size
+     * @return
+     */
+    public List<Photo> getHot(final PhotoCursor after, final int size) {
+        if (after == null || !HOT_CURSOR_MODE.equals(after.getMode())) {
+            return getHot(PageRequest.of(0, size));
+        }
+        return photoRepository.findMostRatedAfter(ShareState.PUBLIC, PhotoState.ACTIVE,
+                after.getValue(), after.getId(), PageRequest.of(0, size));
+    }
 
-        List<Tag> tags = getTagObjects(tagss);
+    /**
+     * Zwraca aktywne zdjecia o podanym stanie udostepnienia, oznaczone wszystkimi tagami
+     *
+     * @param tags
+     * @param shareState
+     * @return {zdjecia posortowane po id}
+     */
+    public List<Photo> getByTagsAll(List<Tag> tags, ShareState shareState) {
+        return getByIds(tagIndex.all(tagNames(tags)), shareState);
+    }
 
-        List<Photo> photos = new ArrayList<>();
-        int counter = 0;
-        long lastId = 0;
+    /**
+     * Zwraca aktywne zdjecia o podanym stanie udostepnienia, oznaczone ktorymkolwiek z tagow
+     *
+     * @param tags
+     * @param shareState
+     * @return {zdjecia posortowane po id}
+     */
+    public List<Photo> getByTagsAny(List<Tag> tags, ShareState shareState) {
+        return getByIds(tagIndex.any(tagNames(tags)), shareState);
+    }
 
+    private List<String> tagNames(List<Tag> tags) {
+        List<String> names = new ArrayList<>();
         for (Tag tag : tags) {
-            if (lastId == tag.getPhoto().getPhotoID()) {
-                counter++;
-            } else {
-                lastId = tag.getPhoto().getPhotoID();
-                counter = 1;
-            }
-            if (counter == tagss.size()) {
-                if (tag.getPhoto().getShareState() == shareState && tag.getPhoto().getPhotoState() == PhotoState.ACTIVE) {
-                    photos.add(tag.getPhoto());
-                }
+            if (tag != null) {
+                names.add(tag.getName());
             }
         }
-        return photos;
+        return names;
     }
 
-    public List<Photo> getByTagsAny(List<Tag> tagss, ShareState shareState) {
-
-        List<Tag> tags = getTagObjects(tagss);
-
-        Map<Long, Photo> list = new HashMap<>();
-        List<Photo> photos = new ArrayList<>();
-        for (Tag tag : tags) {
-            if (tag.getPhoto().getShareState() == shareState && tag.getPhoto().getPhotoState() == PhotoState.ACTIVE) {
-                list.put(tag.getPhoto().getPhotoID(), tag.getPhoto());
-            }
+    private List<Photo> getByIds(long[] ids, ShareState shareState) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
         }
-        for (Map.Entry<Long, Photo> entry : list.entrySet()) {
-            photos.add(entry.getValue());
+        List<Long> photoIds = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            photoIds.add(id);
         }
-        return photos;
+        return photoRepository.findAllByPhotoIDInAndShareStateAndPhotoStateOrderByPhotoID(photoIds, shareState, PhotoState.ACTIVE);
     }
 
     public List<Photo> getShared() {
-        User user = userRepository.findByEmail(((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername());
+        User user = currentUser.getUser();
         List<Photo> photos = new ArrayList<>();
         List<Share> shares = shareRepository.findAllByUser(user);
 
         for (Share share : shares) {
-            photos.add(share.getPhoto());
+            if (share.getPhoto().getPhotoState() != PhotoState.DELETED) {
+                photos.add(share.getPhoto());
+            }
         }
         return photos;
     }
 
     public Photo getPhoto(final Long id) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
+        String email = currentUser.getEmail();
         Photo photo = photoRepository.findByPhotoIDAndPhotoState(id, PhotoState.ACTIVE);
 
         return photo != null && photo.getOwner().getEmail().equals(email) ? photo : null;
     }
 
     public List<Photo> getPhoto(final String name) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         List<Photo> photos = photoRepository.findAllByNameAndPhotoStateAndOwner(name, PhotoState.ACTIVE, user);
 
         return photos.size() > 0 ? photos : null;
@@ -191,25 +245,12 @@ public class PhotoService {
         if (photo.getName() == null) {
             return -1L;
         }
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
 
         try {
-
-            User user = userRepository.findByEmail(email);
-            photo.setOwner(user);
-            photo.setUploadTime(new Timestamp(System.currentTimeMillis()));
-            if (photo.getPhotoState() == null) {
-                photo.setPhotoState(PhotoState.ACTIVE);
-            }
-            if (photo.getShareState() == null) {
-                photo.setShareState(ShareState.PRIVATE);
-            }
-            if (photo.getDescription() == null) {
-                photo.setDescription("");
-            }
-
+            prepare(photo);
             photoRepository.save(photo);
             id = photo.getPhotoID();
+            afterCommit(() -> published(photo));
         } catch (Exception e) {
             return -1L;
         }
@@ -217,22 +258,104 @@ public class PhotoService {
 
     }
 
+    /**
+     * Dodaje zdjecie wskazujace na blob zapisany wczesniej przez BlobService.store.
+     * Skrot jest znany przed insertem, wiec wiersz trafia do bazy od razu ze sciezka, a odwolanie
+     * do bloba jest liczone w tej samej transakcji. Rankingi i wersje pomniejszone powstaja
+     * dopiero po commicie; blob z wycofanej transakcji usunie BlobService.collect
+     *
+     * @param photo
+     * @param blob
+     * @return {id zdjecia lub -1}
+     */
+    public Long addPhotoWithImage(final Photo photo, final Blob blob) {
+        if (photo.getName() == null || blob == null) {
+            return -1L;
+        }
+
+        try {
+            prepare(photo);
+            photo.setPath(blob.getHash());
+            photoRepository.save(photo);
+            blobService.retain(blob.getHash());
+            afterCommit(() -> {
+                published(photo);
+                blobService.scheduleRenditions(blob.getHash());
+            });
+            return photo.getPhotoID();
+        } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return -1L;
+        }
+    }
+
+    private void prepare(Photo photo) {
+        // pelna encja zamiast referencji, bo zdjecie trafia do rankingow trzymanych w pamieci
+        User user = userRepository.findByEmail(currentUser.getEmail());
+        photo.setOwner(user);
+        // sciezke ustawia tylko zapis pliku, razem z odwolaniem do bloba
+        photo.setPath(null);
+        photo.setUploadTime(new Timestamp(System.currentTimeMillis()));
+        if (photo.getPhotoState() == null) {
+            photo.setPhotoState(PhotoState.ACTIVE);
+        }
+        if (photo.getShareState() == null) {
+            photo.setShareState(ShareState.PRIVATE);
+        }
+        if (photo.getDescription() == null) {
+            photo.setDescription("");
+        }
+    }
+
+    /**
+     * Odklada zmiane rankingow trzymanych w pamieci do commitu, zeby wycofana transakcja ich nie zmienila
+     *
+     * @param action
+     */
+    private static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void published(Photo photo) {
+        if (photo.getShareState() == ShareState.PUBLIC && photo.getPhotoState() == PhotoState.ACTIVE) {
+            hotRankingService.onPublished(photo);
+            trendingService.onPublished(photo);
+        }
+    }
+
+    private void removed(Long id) {
+        hotRankingService.onRemoved(id);
+        trendingService.onRemoved(id);
+    }
+
+    /**
+     * Oznacza zdjecie jako usuniete; powiazane wiersze i pliki usuwa w tle PhotoReclaimer
+     *
+     * @param id
+     * @return
+     */
     public boolean deletePhoto(Long id) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         Photo check = photoRepository.findByPhotoIDAndOwner(id, user);
 
-        if (check == null) {
+        if (check == null || check.getPhotoState() == PhotoState.DELETED) {
             return false;
         }
 
         try {
-            ptcRepository.deleteAllByPhoto(check);
-            shareRepository.deleteAllByPhoto(check);
-            rateRepository.deleteAllByPhoto(check);
-            tagRepository.deleteAllByPhoto(check);
-            Files.deleteIfExists(Paths.get(UPLOAD_ROOT + "\\" + email + "\\", check.getName()));
-            photoRepository.delete(check);
+            check.setPhotoState(PhotoState.DELETED);
+            photoRepository.save(check);
+            afterCommit(() -> removed(id));
+            categoryTreeService.invalidate(user);
         } catch (Exception e) {
             return false;
         }
@@ -241,11 +364,10 @@ public class PhotoService {
 
     public boolean editPhoto(Long id, Photo photo) {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         Photo photoToUpdate = photoRepository.findByPhotoIDAndOwner(id, user);
 
-        if (photoToUpdate == null) {
+        if (photoToUpdate == null || photoToUpdate.getPhotoState() == PhotoState.DELETED || photo.getPhotoState() == PhotoState.DELETED) {
             return false;
         }
 
@@ -256,12 +378,18 @@ public class PhotoService {
             }
             if (!photoToUpdate.getPhotoState().equals(photo.getPhotoState()) && photo.getPhotoState() != null) {
                 photoToUpdate.setPhotoState(photo.getPhotoState());
+                categoryTreeService.invalidate(user);
             }
             if (!photoToUpdate.getShareState().equals(photo.getShareState()) && photo.getShareState() != null) {
                 photoToUpdate.setShareState(photo.getShareState());
             }
 
             photoRepository.save(photoToUpdate);
+            if (photoToUpdate.getShareState() == ShareState.PUBLIC && photoToUpdate.getPhotoState() == PhotoState.ACTIVE) {
+                afterCommit(() -> published(photoToUpdate));
+            } else {
+                afterCommit(() -> removed(id));
+            }
         } catch (Exception e) {
             return false;
         }
@@ -270,8 +398,7 @@ public class PhotoService {
 
     public int getPhotosCount(ShareState ss, PhotoState ps) {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         return ss == ShareState.PRIVATE ?
                 photoRepository.countAllByOwnerAndPhotoState(user, ps) :
@@ -282,14 +409,12 @@ public class PhotoService {
 
     public List<Photo> getArchived() {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         return photoRepository.findAllByShareStateAndPhotoStateAndOwner(ShareState.PRIVATE, PhotoState.ARCHIVED, user);
     }
 
     public List<Photo> getNoCategoryPhotos() {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         return photoRepository.findAllByShareStateAndPhotoStateAndHasCategoryAndOwner(ShareState.PRIVATE, PhotoState.ACTIVE, false, user);
     }
@@ -4,12 +4,13 @@ import com.photos.api.models.Category;
 import com.photos.api.models.Photo;
 import com.photos.api.models.PhotoToCategory;
 import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.repositories.CategoryRepository;
 import com.photos.api.models.repositories.PhotoRepository;
 import com.photos.api.models.repositories.PhotoToCategoryRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 /**
@@ -20,6 +21,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class PhotoToCategoryService {
 
+    @Autowired
+    private CurrentUser currentUser;
+
     @Autowired
     private PhotoToCategoryRepository PTCRepository;
 
@@ -32,27 +36,32 @@ public class PhotoToCategoryService {
     @Autowired
     private PhotoRepository photoRepository;
 
+    @Autowired
+    private CategoryTreeService categoryTreeService;
+
     public boolean setCategory(PhotoToCategory ptc) {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         if (PTCRepository.findByPhotoAndCategory(ptc.getPhoto(), ptc.getCategory()) != null) {
             return false;
         }
         if (categoryRepository.findByCategoryIDAndUser(ptc.getCategory().getCategoryID(), user) == null) {
             return false;
         }
+        Photo photo = photoRepository.findByPhotoID(ptc.getPhoto().getPhotoID());
+        if (photo == null || photo.getPhotoState() == PhotoState.DELETED) {
+            return false;
+        }
         PTCRepository.save(ptc);
 
-        Photo photo = photoRepository.getOne(ptc.getPhoto().getPhotoID());
         photo.setHasCategory(true);
         photoRepository.save(photo);
+        categoryTreeService.invalidate(user);
         return true;
     }
 
     public boolean setNewCategory(PhotoToCategory ptc, Category category) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         PhotoToCategory check = PTCRepository.findByPhotoAndCategory(ptc.getPhoto(), ptc.getCategory());
         if (check == null) {
@@ -61,11 +70,15 @@ public class PhotoToCategoryService {
         if (categoryRepository.findByCategoryIDAndUser(category.getCategoryID(), user) == null) {
             return false;
         }
+        Photo photo = photoRepository.findByPhotoID(check.getPhoto().getPhotoID());
+        if (photo == null || photo.getPhotoState() == PhotoState.DELETED) {
+            return false;
+        }
         check.setCategory(category);
         PTCRepository.save(check);
-        Photo photo = photoRepository.getOne(check.getPhoto().getPhotoID());
         photo.setHasCategory(true);
         photoRepository.save(photo);
+        categoryTreeService.invalidate(user);
         return true;
     }
 
@@ -81,6 +94,7 @@ public class PhotoToCategoryService {
             photo.setHasCategory(false);
             photoRepository.save(photo);
         }
+        categoryTreeService.invalidate(currentUser.getUser());
         return true;
     }
 }
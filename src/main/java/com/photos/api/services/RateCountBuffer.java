@@ -0,0 +1,148 @@
+package com.photos.api.services;
+
+import com.photos.api.models.repositories.PhotoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.transaction.Transactional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bufor zmian licznika ocen (photo.rate_count).
+ * Zmiany sa zbierane w pamieci i okresowo zapisywane do bazy jednym przebiegiem.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class RateCountBuffer {
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    /**
+     * Zapisujacy biora blokade wspoldzielona, flush tylko na czas podmiany mapy, recount na caly przebieg
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private volatile Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, LongAdder> flushing = new ConcurrentHashMap<>();
+
+    public void add(final Long photoId, final long delta) {
+        swapLock.readLock().lock();
+        try {
+            pending.computeIfAbsent(photoId, k -> new LongAdder()).add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Zwraca zmiane licznika, ktora nie zostala jeszcze zapisana w bazie
+     *
+     * @param photoId
+     * @return
+     */
+    public long pending(final Long photoId) {
+        return sum(pending.get(photoId)) + sum(flushing.get(photoId));
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${photos.rates.flush-interval:5000}")
+    public synchronized void flush() {
+        if (!flushing.isEmpty()) {
+            // poprzedni flush czeka jeszcze na zakonczenie transakcji
+            return;
+        }
+        swapLock.writeLock().lock();
+        try {
+            flushing = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        final Map<Long, LongAdder> batch = flushing;
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            // zmiany licza sie jako zapisane dopiero po commicie, do tego czasu pending() je uwzglednia
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    flushing = new ConcurrentHashMap<>();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        restore(batch);
+                    }
+                    flushing = new ConcurrentHashMap<>();
+                }
+            });
+        }
+
+        try {
+            for (Map.Entry<Long, LongAdder> entry : batch.entrySet()) {
+                long delta = entry.getValue().sum();
+                if (delta != 0) {
+                    photoRepository.addRateCount(entry.getKey(), delta);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!inTransaction) {
+                restore(batch);
+            }
+            throw e;
+        } finally {
+            if (!inTransaction) {
+                flushing = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Przywraca niezapisane zmiany, zeby trafily do kolejnego flusha
+     *
+     * @param batch
+     */
+    private void restore(Map<Long, LongAdder> batch) {
+        for (Map.Entry<Long, LongAdder> entry : batch.entrySet()) {
+            add(entry.getKey(), entry.getValue().sum());
+        }
+    }
+
+    /**
+     * Przelicza liczniki od nowa z tabeli rate, na wypadek utraty bufora przy awarii.
+     * Zapisujacy czekaja do konca przeliczenia, inaczej ocena dodana miedzy flushem
+     * a przeliczeniem bylaby policzona dwa razy
+     */
+    @Transactional
+    @Scheduled(cron = "${photos.rates.recount-cron:0 30 4 * * *}")
+    public synchronized void recount() {
+        swapLock.writeLock().lock();
+        try {
+            flush();
+            photoRepository.recountRates();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    private static long sum(LongAdder adder) {
+        return adder == null ? 0 : adder.sum();
+    }
+}
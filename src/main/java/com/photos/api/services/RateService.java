@@ -8,8 +8,8 @@ import com.photos.api.models.enums.ShareState;
 import com.photos.api.models.repositories.PhotoRepository;
 import com.photos.api.models.repositories.RateRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
@@ -23,6 +23,9 @@ import java.util.List;
 @Service
 public class RateService {
 
+    @Autowired
+    private CurrentUser currentUser;
+
     @Autowired
     private PhotoRepository photoRepository;
 
@@ -32,20 +35,27 @@ public class RateService {
     @Autowired
     private RateRepository rateRepository;
 
+    @Autowired
+    private RateCountBuffer rateCountBuffer;
+
+    @Autowired
+    private HotRankingService hotRankingService;
+
+    @Autowired
+    private TrendingService trendingService;
+
     /**
-     * Pobiera wszystkie oceny danego zdjecia z bazy oraz wylicza srednia
+     * Zwraca liczbe ocen zdjecia z licznika photo.rate_count powiekszona o zmiany czekajace w buforze
      *
-     * @param
-     * @return {srednia ocena zdjecia}
+     * @param photo
+     * @return {liczba ocen zdjecia}
      */
     public int getPhotoRate(final Photo photo) {
-        List<Rate> rates = rateRepository.findAllByPhoto(photo);
-        return rates.size();
+        return (int) (photo.getRateCount() + rateCountBuffer.pending(photo.getPhotoID()));
     }
 
     public boolean addRate(Photo photo) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         Rate check = rateRepository.findByPhotoAndUser(photo, user);
         if (check != null) {
@@ -63,6 +73,9 @@ public class RateService {
             rate.setUser(user);
             rate.setDate(new Timestamp(System.currentTimeMillis()));
             rateRepository.save(rate);
+            rateCountBuffer.add(photo.getPhotoID(), 1);
+            hotRankingService.onRate(photoo, rate.getDate());
+            trendingService.onRate(photoo, rate.getDate());
         } catch (Exception e) {
             return false;
         }
@@ -70,8 +83,7 @@ public class RateService {
     }
 
     public boolean deleteRate(Photo photo) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         Rate rate = rateRepository.findByPhotoAndUser(photo, user);
         if (rate == null) {
@@ -79,6 +91,9 @@ public class RateService {
         }
         try {
             rateRepository.delete(rate);
+            rateCountBuffer.add(photo.getPhotoID(), -1);
+            hotRankingService.onUnrate(photo, rate.getDate());
+            trendingService.onUnrate(photo, rate.getDate());
         } catch (Exception e) {
             return false;
         }
@@ -87,8 +102,7 @@ public class RateService {
 
 
     public List<Rate> getAll() {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         return rateRepository.findAllByUser(user);
     }
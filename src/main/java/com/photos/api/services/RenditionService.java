@@ -0,0 +1,297 @@
+package com.photos.api.services;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generuje pomniejszone wersje zdjec (dluzszy bok = rozmiar) jako pliki {id}_{rozmiar}.jpg
+ * obok oryginalu. Prace wykonuje ograniczona pula watkow z ograniczona kolejka;
+ * gdy kolejka jest pelna, zadanie jest pomijane, a wersja powstanie przy pierwszym zadaniu o nia.
+ * Oryginal jest dekodowany z podprobkowaniem do okolo docelowego rozmiaru, a obrazy o wiecej niz
+ * max-pixels pikselach sa odrzucane przed dekodowaniem. Wersje sa obracane wedlug EXIF Orientation.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class RenditionService {
+
+    @Value("${photos.renditions.sizes:150,480,1080}")
+    private int[] sizes;
+
+    @Value("${photos.renditions.threads:2}")
+    private int threads;
+
+    @Value("${photos.renditions.queue:100}")
+    private int queue;
+
+    @Value("${photos.renditions.quality:0.85}")
+    private float quality;
+
+    @Value("${photos.renditions.timeout:10000}")
+    private long timeout;
+
+    @Value("${photos.renditions.max-pixels:100000000}")
+    private long maxPixels;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Wersje w trakcie generowania, zeby jednoczesne zadania nie skalowaly tego samego pliku
+     */
+    private final Map<Path, CompletableFuture<Path>> running = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(sizes);
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rendition-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Zwraca najmniejszy skonfigurowany rozmiar nie mniejszy od zadanego, a dla wiekszych zadan null (oryginal)
+     *
+     * @param size
+     * @return
+     */
+    public Integer snap(final int size) {
+        for (int s : sizes) {
+            if (s >= size) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    public Path renditionPath(final Path original, final int size) {
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return original.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + "_" + size + ".jpg");
+    }
+
+    /**
+     * Zleca wygenerowanie wszystkich rozmiarow dla nowego oryginalu
+     *
+     * @param original
+     */
+    public void schedule(final Path original) {
+        for (int size : sizes) {
+            render(original, size);
+        }
+    }
+
+    /**
+     * Zwraca sciezke do wersji zdjecia, w razie potrzeby generujac ja i czekajac na wynik
+     *
+     * @param original
+     * @param size
+     * @return {sciezka do wersji lub oryginalu, gdy wersji nie udalo sie wygenerowac}
+     */
+    public Path getRendition(final Path original, final int size) {
+        Path target = renditionPath(original, size);
+        if (Files.exists(target)) {
+            return target;
+        }
+        try {
+            return render(original, size).get(timeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            return original;
+        }
+    }
+
+    public List<Path> renditionPaths(final Path original) {
+        List<Path> paths = new ArrayList<>();
+        for (int size : sizes) {
+            paths.add(renditionPath(original, size));
+        }
+        return paths;
+    }
+
+    public void deleteRenditions(final Path original) {
+        for (Path path : renditionPaths(original)) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private CompletableFuture<Path> render(Path original, int size) {
+        Path target = renditionPath(original, size);
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = running.putIfAbsent(target, future);
+        if (existing != null) {
+            return existing;
+        }
+        future.whenComplete((path, e) -> running.remove(target, future));
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(resize(original, target, size));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private Path resize(Path original, Path target, int size) throws IOException {
+        if (Files.exists(target)) {
+            return target;
+        }
+        BufferedImage source = read(original, size);
+
+        double scale = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        int orientation = orientation(original);
+        BufferedImage scaled = orientation >= 5 ?
+                new BufferedImage(height, width, BufferedImage.TYPE_INT_RGB) :
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.transform(orient(orientation, width, height));
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path temp = Files.createTempFile(target.getParent(), "rendition", ".tmp");
+        try {
+            write(scaled, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    /**
+     * Dekoduje pierwszy obraz pliku, co krok-ty piksel w kazdym kierunku, tak zeby dluzszy bok
+     * pozostal nie mniejszy niz size; pamiec zalezy wiec od size, a nie od rozmiaru oryginalu
+     */
+    private BufferedImage read(Path original, int size) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image " + original);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image " + original + " has " + width + "x" + height + " pixels");
+                }
+                int step = Math.max(1, Math.max(width, height) / size);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return {wartosc EXIF Orientation 1-8, 1 gdy jej brak}
+     */
+    private static int orientation(Path original) {
+        try {
+            ExifIFD0Directory exif = ImageMetadataReader.readMetadata(original.toFile()).getDirectory(ExifIFD0Directory.class);
+            return exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION) ?
+                    exif.getInt(ExifIFD0Directory.TAG_ORIENTATION) : 1;
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Przeksztalcenie obrazu width x height zapisanego z danym EXIF Orientation do pozycji wyswietlania
+     */
+    private static AffineTransform orient(int orientation, int width, int height) {
+        switch (orientation) {
+            case 2:
+                return new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3:
+                return new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4:
+                return new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5:
+                return new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6:
+                return new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7:
+                return new AffineTransform(0, -1, -1, 0, height, width);
+            case 8:
+                return new AffineTransform(0, -1, 1, 0, 0, width);
+            default:
+                return new AffineTransform();
+        }
+    }
+
+    private void write(BufferedImage image, Path path) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Photo;
+import com.photos.api.models.ResponsePhoto;
+import com.photos.api.models.Tag;
+import com.photos.api.models.repositories.TagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Buduje ResponsePhoto dla calej strony zdjec naraz.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class ResponsePhotoService {
+
+    @Autowired
+    private RateService rateService;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    /**
+     * Pobiera tagi wszystkich zdjec jednym zapytaniem, liczbe ocen bierze z licznika zdjecia
+     * i sklada z nich liste ResponsePhoto w kolejnosci wejsciowej
+     *
+     * @param photos
+     * @return {lista ResponsePhoto, pusta gdy brak zdjec}
+     */
+    public List<ResponsePhoto> convert(final List<Photo> photos) {
+        return convert(photos, rateService::getPhotoRate);
+    }
+
+    /**
+     * Jak convert(photos), ale liczbe ocen bierze z podanego zrodla
+     *
+     * @param photos
+     * @param rates
+     * @return
+     */
+    public List<ResponsePhoto> convert(final List<Photo> photos, final ToIntFunction<Photo> rates) {
+        List<ResponsePhoto> responsePhotos = new ArrayList<>();
+        if (photos == null || photos.isEmpty()) {
+            return responsePhotos;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (Photo photo : photos) {
+            ids.add(photo.getPhotoID());
+        }
+
+        Map<Long, List<Tag>> tags = new HashMap<>();
+        for (Tag tag : tagRepository.findAllByPhotoIDIn(ids)) {
+            tags.computeIfAbsent(tag.getphoto_id(), k -> new ArrayList<>()).add(tag);
+        }
+
+        for (Photo photo : photos) {
+            responsePhotos.add(new ResponsePhoto(photo,
+                    rates.applyAsInt(photo),
+                    tags.getOrDefault(photo.getPhotoID(), new ArrayList<>())));
+        }
+        return responsePhotos;
+    }
+
+    public ResponsePhoto convert(final Photo photo) {
+        return convert(Collections.singletonList(photo)).get(0);
+    }
+}
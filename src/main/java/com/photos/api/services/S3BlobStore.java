@@ -0,0 +1,184 @@
+package com.photos.api.services;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.amazonaws.services.s3.transfer.Upload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bloby w kubelku S3 lub zgodnym z S3 serwerze (np. MinIO, wtedy endpoint i path-style).
+ * Pliki wieksze niz multipart-threshold sa wysylane w czesciach rownolegle przez TransferManager.
+ *
+ * @version 1.0
+ */
+
+@Component
+@ConditionalOnProperty(name = "photos.storage.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    @Value("${photos.storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${photos.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${photos.storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${photos.storage.s3.access-key}")
+    private String accessKey;
+
+    @Value("${photos.storage.s3.secret-key}")
+    private String secretKey;
+
+    @Value("${photos.storage.s3.path-style:true}")
+    private boolean pathStyle;
+
+    @Value("${photos.storage.s3.multipart-threshold:16777216}")
+    private long multipartThreshold;
+
+    @Value("${photos.storage.s3.part-size:8388608}")
+    private long partSize;
+
+    @Value("${photos.storage.s3.upload-threads:4}")
+    private int uploadThreads;
+
+    private AmazonS3 s3;
+    private TransferManager transferManager;
+
+    @PostConstruct
+    public void init() {
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withPathStyleAccessEnabled(pathStyle)
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)));
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        }
+        s3 = builder.build();
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3)
+                .withMultipartUploadThreshold(multipartThreshold)
+                .withMinimumUploadPartSize(partSize)
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(uploadThreads, threadFactory))
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        transferManager.shutdownNow(true);
+    }
+
+    @Override
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile("upload", ".tmp");
+    }
+
+    @Override
+    public void put(final String key, final Path file) throws IOException {
+        try {
+            await(transferManager.upload(bucket, key, file.toFile()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public void put(final String key, final InputStream in, final long length) throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        await(transferManager.upload(bucket, key, in, metadata));
+    }
+
+    @Override
+    public boolean exists(final String key) {
+        return s3.doesObjectExist(bucket, key);
+    }
+
+    @Override
+    public long size(final String key) throws IOException {
+        try {
+            return s3.getObjectMetadata(bucket, key).getContentLength();
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return -1;
+            }
+            throw new IOException(e);
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public InputStream get(final String key) throws IOException {
+        try {
+            return s3.getObject(bucket, key).getObjectContent();
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public InputStream get(final String key, final long start, final long end) throws IOException {
+        try {
+            return s3.getObject(new GetObjectRequest(bucket, key).withRange(start, end)).getObjectContent();
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void delete(final String key) throws IOException {
+        try {
+            s3.deleteObject(bucket, key);
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public Path localPath(final String key) {
+        return null;
+    }
+
+    private void await(Upload upload) throws IOException {
+        try {
+            upload.waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.photos.api.services;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Skroty SHA-256 w postaci hex, wspolne dla blobow, wysylania w czesciach i tokenow.
+ *
+ * @version 1.0
+ */
+
+public final class Sha256 {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Sha256() {
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param hash
+     * @return {bajty w postaci hex, dwa znaki na bajt}
+     */
+    public static String hex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
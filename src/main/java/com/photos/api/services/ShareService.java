@@ -6,8 +6,8 @@ import com.photos.api.models.enums.PhotoState;
 import com.photos.api.models.repositories.PhotoRepository;
 import com.photos.api.models.repositories.ShareRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 /**
@@ -18,6 +18,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class ShareService {
 
+    @Autowired
+    private CurrentUser currentUser;
+
     @Autowired
     private ShareRepository shareRepository;
 
@@ -39,8 +42,7 @@ public class ShareService {
      */
     public boolean addShare(final Share share) {
 
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User owner = userRepository.findByEmail(email);
+        User owner = currentUser.getUser();
         try {
 
             // sprawdzenie czy nie istnieje juz takie udostepnienie w bazie
@@ -69,8 +71,7 @@ public class ShareService {
     }
 
     public boolean deleteShare(Share sharee) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User owner = userRepository.findByEmail(email);
+        User owner = currentUser.getUser();
 
         Share share = shareRepository.findByPhotoAndUserAndOwner(sharee.getPhoto(), sharee.getUser(),owner);
         if (share == null) {
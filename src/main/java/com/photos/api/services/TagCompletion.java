@@ -0,0 +1,156 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Tag;
+import com.photos.api.models.TagSuggestion;
+import com.photos.api.models.repositories.TagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Podpowiadanie nazw tagow po prefiksie.
+ * <p>
+ * Dla wszystkich tagow i osobno dla kazdego uzytkownika trzyma posortowana mape
+ * rozne nazwa -> liczba uzyc. Prefiks wyznacza w niej zakres, z ktorego kopiec
+ * wybiera N najczesciej uzywanych nazw. Kluczem jest nazwa malymi literami, jak
+ * w porownaniach bazy, a podpowiedz zwraca nazwe w pisowni, w ktorej trafila do mapy.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class TagCompletion {
+
+    private static final Comparator<Counted> BY_COUNT =
+            Comparator.<Counted>comparingInt(counted -> counted.count)
+                    .thenComparing(counted -> counted.name, Comparator.reverseOrder());
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    private final NavigableMap<String, Counted> global = new ConcurrentSkipListMap<>();
+    private final Map<Long, NavigableMap<String, Counted>> users = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Zwraca najczesciej uzywane nazwy tagow zaczynajace sie od prefiksu
+     *
+     * @param prefix
+     * @param limit
+     * @return {lista podpowiedzi od najczesciej uzywanej}
+     */
+    public List<TagSuggestion> complete(final String prefix, final int limit) {
+        if (!loaded) {
+            load();
+        }
+        return top(global, prefix, limit);
+    }
+
+    public List<TagSuggestion> complete(final Long userId, final String prefix, final int limit) {
+        if (!loaded) {
+            load();
+        }
+        NavigableMap<String, Counted> names = users.get(userId);
+        return names == null ? new ArrayList<>() : top(names, prefix, limit);
+    }
+
+    public synchronized void add(final Long userId, final String name) {
+        if (!loaded) {
+            return;
+        }
+        count(userId, name, 1);
+    }
+
+    public synchronized void remove(final Long userId, final String name) {
+        if (!loaded) {
+            return;
+        }
+        count(userId, name, -1);
+    }
+
+    public void remove(final List<Tag> tags) {
+        for (Tag tag : tags) {
+            remove(tag.getUser().getUserID(), tag.getName());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        for (Object[] row : tagRepository.findNamesAndUserIDs()) {
+            count((Long) row[1], (String) row[0], 1);
+        }
+        loaded = true;
+    }
+
+    private void count(Long userId, String name, int delta) {
+        Counted counted = new Counted(name, delta);
+        if (delta > 0) {
+            global.merge(key(name), counted, TagCompletion::sum);
+            users.computeIfAbsent(userId, k -> new ConcurrentSkipListMap<>()).merge(key(name), counted, TagCompletion::sum);
+            return;
+        }
+        // odjecie od nieznanej nazwy nie moze dodac wpisu z ujemnym licznikiem
+        global.computeIfPresent(key(name), (k, current) -> sum(current, counted));
+        NavigableMap<String, Counted> names = users.get(userId);
+        if (names != null) {
+            names.computeIfPresent(key(name), (k, current) -> sum(current, counted));
+        }
+    }
+
+    /**
+     * @return {suma lub null, co usuwa nazwe z mapy gdy licznik spadnie do zera}
+     */
+    private static Counted sum(Counted a, Counted b) {
+        int sum = a.count + b.count;
+        return sum > 0 ? new Counted(a.name, sum) : null;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<TagSuggestion> top(NavigableMap<String, Counted> names, String prefix, int limit) {
+        String from = key(prefix);
+        PriorityQueue<Counted> heap = new PriorityQueue<>(BY_COUNT);
+        for (Counted counted : names.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            heap.add(counted);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<TagSuggestion> suggestions = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            Counted counted = heap.poll();
+            suggestions.add(0, new TagSuggestion(counted.name, counted.count));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Nazwa w pierwszej zapamietanej pisowni i liczba uzyc; niezmienna, wiec odczyty nie blokuja
+     */
+    private static class Counted {
+        private final String name;
+        private final int count;
+
+        Counted(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Tag;
+import com.photos.api.models.repositories.TagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indeks odwrotny: nazwa tagu -> posortowana tablica id zdjec.
+ * Nazwy sa porownywane bez wielkosci liter, jak w domyslnym collation bazy.
+ * <p>
+ * Tablice sa niezmienne (kazda zmiana tworzy kopie), wiec odczyty nie blokuja,
+ * a zmiany sa serializowane na obiekcie indeksu.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class TagIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Zwraca id zdjec oznaczonych wszystkimi podanymi tagami
+     *
+     * @param names
+     * @return {rosnaco posortowane id zdjec}
+     */
+    public long[] all(final Collection<String> names) {
+        long[][] lists = lists(names);
+        if (lists.length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        long[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca id zdjec oznaczonych ktorymkolwiek z podanych tagow
+     *
+     * @param names
+     * @return {rosnaco posortowane id zdjec}
+     */
+    public long[] any(final Collection<String> names) {
+        long[] result = EMPTY;
+        for (long[] list : lists(names)) {
+            result = union(result, list);
+        }
+        return result;
+    }
+
+    public synchronized void add(final String name, final Long photoId) {
+        if (!loaded) {
+            return;
+        }
+        postings.compute(key(name), (k, list) -> insert(list == null ? EMPTY : list, photoId));
+    }
+
+    public synchronized void remove(final String name, final Long photoId) {
+        if (!loaded) {
+            return;
+        }
+        postings.computeIfPresent(key(name), (k, list) -> {
+            long[] rest = delete(list, photoId);
+            return rest.length == 0 ? null : rest;
+        });
+    }
+
+    public void remove(final List<Tag> tags) {
+        for (Tag tag : tags) {
+            remove(tag.getName(), tag.getphoto_id());
+        }
+    }
+
+    /**
+     * Usuwa zdjecia ze wszystkich list; przeglada caly indeks, wiec tylko do rzadkich operacji
+     *
+     * @param photoIds
+     */
+    public synchronized void removePhotos(final Set<Long> photoIds) {
+        if (!loaded || photoIds.isEmpty()) {
+            return;
+        }
+        for (String name : postings.keySet()) {
+            postings.computeIfPresent(name, (k, list) -> {
+                long[] rest = Arrays.stream(list).filter(id -> !photoIds.contains(id)).toArray();
+                return rest.length == 0 ? null : rest;
+            });
+        }
+    }
+
+    private long[][] lists(Collection<String> names) {
+        if (!loaded) {
+            load();
+        }
+        return names.stream().map(TagIndex::key).distinct()
+                .map(name -> postings.getOrDefault(name, EMPTY))
+                .toArray(long[][]::new);
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        Map<String, List<Long>> ids = new HashMap<>();
+        for (Object[] row : tagRepository.findNamesAndPhotoIDs()) {
+            ids.computeIfAbsent(key((String) row[0]), k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        for (Map.Entry<String, List<Long>> entry : ids.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().stream().mapToLong(Long::longValue).sorted().distinct().toArray());
+        }
+        loaded = true;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] insert(long[] list, long id) {
+        int at = Arrays.binarySearch(list, id);
+        if (at >= 0) {
+            return list;
+        }
+        at = -at - 1;
+        long[] copy = new long[list.length + 1];
+        System.arraycopy(list, 0, copy, 0, at);
+        copy[at] = id;
+        System.arraycopy(list, at, copy, at + 1, list.length - at);
+        return copy;
+    }
+
+    private static long[] delete(long[] list, long id) {
+        int at = Arrays.binarySearch(list, id);
+        if (at < 0) {
+            return list;
+        }
+        long[] copy = new long[list.length - 1];
+        System.arraycopy(list, 0, copy, 0, at);
+        System.arraycopy(list, at + 1, copy, at, list.length - at - 1);
+        return copy;
+    }
+
+    /**
+     * Przeglada krotsza liste i szuka jej elementow w dluzszej wyszukiwaniem binarnym
+     */
+    private static long[] intersect(long[] shorter, long[] longer) {
+        long[] out = new long[shorter.length];
+        int n = 0;
+        int from = 0;
+        for (long id : shorter) {
+            int at = Arrays.binarySearch(longer, from, longer.length, id);
+            if (at >= 0) {
+                out[n++] = id;
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+            if (from >= longer.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                out[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            out[n++] = a[i++];
+        }
+        while (j < b.length) {
+            out[n++] = b[j++];
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
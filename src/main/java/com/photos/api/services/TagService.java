@@ -2,15 +2,29 @@ package com.photos.api.services;
 
 import com.photos.api.models.Photo;
 import com.photos.api.models.Tag;
+import com.photos.api.models.TagResult;
+import com.photos.api.models.TagSuggestion;
 import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.TagResultStatus;
 import com.photos.api.models.repositories.PhotoRepository;
 import com.photos.api.models.repositories.TagRepository;
 import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * @author Micha Królewski on 2018-04-21.
@@ -20,6 +34,9 @@ import java.util.List;
 @Service
 public class TagService {
 
+    @Autowired
+    private CurrentUser currentUser;
+
     @Autowired
     private TagRepository tagRepository;
 
@@ -29,6 +46,18 @@ public class TagService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private TagCompletion tagCompletion;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
     /**
      * Zwraca wszystkie tagi z bazy
      *
@@ -40,14 +69,14 @@ public class TagService {
     }
 
     /**
-     * Zwraca wszystkie tagi zaczynajace sie od podanego wzorca
+     * Zwraca najczesciej uzywane rozne nazwy tagow zaczynajace sie od podanego wzorca
      *
      * @param name
+     * @param limit
      * @return
      */
-    public List<Tag> getPublicTags(String name) {
-        List<Tag> tags = tagRepository.findAllByNameLike(name + "%");
-        return tags;
+    public List<TagSuggestion> getPublicTags(String name, int limit) {
+        return tagCompletion.complete(name, limit);
     }
 
     /**
@@ -56,23 +85,21 @@ public class TagService {
      * @return
      */
     public List<Tag> getTags() {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         List<Tag> tags = tagRepository.findAllByUser(user);
         return tags;
     }
 
     /**
-     * Zwraca wszystkie tagu uzytkownika rozpoczynajace sie od podanego wzorca
+     * Zwraca najczesciej uzywane rozne nazwy tagow uzytkownika rozpoczynajace sie od podanego wzorca
      *
      * @param name
+     * @param limit
      * @return
      */
-    public List<Tag> getTags(String name) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
-        List<Tag> tags = tagRepository.findAllByNameLikeAndUser(name + "%", user);
-        return tags;
+    public List<TagSuggestion> getTags(String name, int limit) {
+        User user = currentUser.getUser();
+        return tagCompletion.complete(user.getUserID(), name, limit);
     }
 
     /**
@@ -93,26 +120,113 @@ public class TagService {
      * @param tags
      * @return
      */
+    @Transactional
     public boolean addTags(List<Tag> tags) {
+        addTagsBulk(tags);
+        return true;
+    }
+
+    /**
+     * Dodaje wiele tagow naraz: uzytkownik, istnienie zdjec i duplikaty sa sprawdzane
+     * jednym zapytaniem kazde, a inserty ida batchami JDBC
+     *
+     * @param tags
+     * @return {wynik dla kazdego tagu, w kolejnosci listy}
+     */
+    @Transactional
+    public List<TagResult> addTagsBulk(final List<Tag> tags) {
+        User user = currentUser.getUser();
+        Long userId = user.getUserID();
+
+        Set<Long> photoIds = new HashSet<>();
+        Set<String> names = new HashSet<>();
         for (Tag tag : tags) {
-            addTag(tag);
+            if (isValid(tag)) {
+                photoIds.add(tag.getPhoto().getPhotoID());
+                names.add(tag.getName());
+            }
         }
-        return true;
+
+        Set<Long> existingPhotos = new HashSet<>();
+        Set<String> taken = new HashSet<>();
+        if (!photoIds.isEmpty()) {
+            existingPhotos.addAll(photoRepository.findExistingIDs(photoIds, PhotoState.DELETED));
+            for (Object[] row : tagRepository.findPhotoIDsAndNames(photoIds, names)) {
+                taken.add(key((Long) row[0], (String) row[1]));
+            }
+        }
+
+        List<TagResult> results = new ArrayList<>(tags.size());
+        int pending = 0;
+        for (Tag tag : tags) {
+            if (!isValid(tag)) {
+                results.add(new TagResult(tag == null || tag.getPhoto() == null ? null : tag.getPhoto().getPhotoID(),
+                        tag == null ? null : tag.getName(), null, TagResultStatus.INVALID));
+                continue;
+            }
+            Long photoId = tag.getPhoto().getPhotoID();
+            if (!existingPhotos.contains(photoId)) {
+                results.add(new TagResult(photoId, tag.getName(), null, TagResultStatus.PHOTO_NOT_FOUND));
+                continue;
+            }
+            if (!taken.add(key(photoId, tag.getName()))) {
+                results.add(new TagResult(photoId, tag.getName(), null, TagResultStatus.DUPLICATE));
+                continue;
+            }
+
+            Tag entity = new Tag(photoRepository.getOne(photoId), userRepository.getOne(userId), tag.getName());
+            entityManager.persist(entity);
+            results.add(new TagResult(photoId, tag.getName(), entity.getTagID(), TagResultStatus.CREATED));
+            if (++pending == batchSize) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        entityManager.flush();
+
+        // indeks i podpowiedzi dopiero po zapisaniu tagow w bazie
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (TagResult result : results) {
+                    if (result.getStatus() == TagResultStatus.CREATED) {
+                        tagIndex.add(result.getName(), result.getPhotoID());
+                        tagCompletion.add(userId, result.getName());
+                    }
+                }
+            }
+        });
+        return results;
+    }
+
+    private static boolean isValid(Tag tag) {
+        return tag != null && tag.getName() != null && !tag.getName().isEmpty()
+                && tag.getPhoto() != null && tag.getPhoto().getPhotoID() != null;
+    }
+
+    /**
+     * Klucz duplikatu bez wielkosci liter, bo tak porownuje nazwy baza
+     */
+    private static String key(Long photoId, String name) {
+        return photoId + "/" + name.toLowerCase(Locale.ROOT);
     }
 
     public boolean addTag(Tag tag) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
         if (tagRepository.findByPhotoAndName(tag.getPhoto(), tag.getName()) != null) {
             return false;
         }
-        if (photoRepository.findByPhotoID(tag.getPhoto().getPhotoID()) == null) {
+        Photo photo = photoRepository.findByPhotoID(tag.getPhoto().getPhotoID());
+        if (photo == null || photo.getPhotoState() == PhotoState.DELETED) {
             return false;
         }
 
         try {
             tag.setUser(user);
             tagRepository.save(tag);
+            tagIndex.add(tag.getName(), tag.getphoto_id());
+            tagCompletion.add(user.getUserID(), tag.getName());
         } catch (Exception e) {
             return false;
         }
@@ -120,8 +234,7 @@ public class TagService {
     }
 
     public boolean deleteTag(Long id) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         Tag tag = tagRepository.findByTagIDAndUser(id, user);
         if (tag == null) {
@@ -130,6 +243,8 @@ public class TagService {
 
         try {
             tagRepository.delete(tag);
+            tagIndex.remove(tag.getName(), tag.getphoto_id());
+            tagCompletion.remove(user.getUserID(), tag.getName());
         } catch (Exception e) {
             return false;
         }
@@ -137,8 +252,7 @@ public class TagService {
     }
 
     public boolean deleteTags(Long id) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        User user = userRepository.findByEmail(email);
+        User user = currentUser.getUser();
 
         Photo photo = photoRepository.findByPhotoIDAndOwner(id, user);
         List<Tag> tags = tagRepository.findAllByPhoto(photo);
@@ -150,6 +264,8 @@ public class TagService {
             for (Tag tag : tags) {
                 tagRepository.delete(tag);
             }
+            tagIndex.remove(tags);
+            tagCompletion.remove(tags);
         } catch (Exception e) {
             return false;
         }
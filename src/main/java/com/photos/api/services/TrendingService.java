@@ -0,0 +1,290 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Photo;
+import com.photos.api.models.PhotoCursor;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.RateRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ranking TRENDING: liczy oceny zdjec w przesuwanym oknie czasu
+ * (bufor cykliczny licznikow godzinowych) i sortuje po tempie przybywania ocen.
+ * <p>
+ * Tempo to srednia liczba ocen na godzine w calym oknie, wazona wykladniczo malejaco
+ * z wiekiem godziny (okres polowicznego zaniku half-life-hours). Swieze oceny licza sie bardziej,
+ * ale pojedyncza ocena z ostatniej godziny nie wyprzedza zdjecia ocenianego stale przez cale okno.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class TrendingService {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private RateRepository rateRepository;
+
+    @Value("${photos.trending.window-hours:72}")
+    private int windowHours;
+
+    @Value("${photos.trending.half-life-hours:6}")
+    private double halfLifeHours;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new Trend[0]);
+    private volatile boolean loaded;
+
+    /**
+     * Zwraca strone rankingu; z bazy laduje tylko zdjecia z tej strony
+     *
+     * @param pageable
+     * @return
+     */
+    public List<Photo> getTrending(final Pageable pageable) {
+        Trend[] order = current().order;
+        int from = (int) Math.min(pageable.getOffset(), order.length);
+        return load(order, from, pageable.getPageSize());
+    }
+
+    public List<Photo> getTrending(final PhotoCursor after, final int size) {
+        if (after == null) {
+            return getTrending(PageRequest.of(0, size));
+        }
+        Trend[] order = current().order;
+        int from = Arrays.binarySearch(order, new Trend(after.getId(), Double.longBitsToDouble(after.getValue())));
+        from = from >= 0 ? from + 1 : -from - 1;
+        return load(order, from, size);
+    }
+
+    /**
+     * @param photoId
+     * @return {kursor wskazujacy na zdjecie lub null gdy zdjecia nie ma w rankingu}
+     */
+    public PhotoCursor cursor(final Long photoId) {
+        Trend trend = snapshot.byId.get(photoId);
+        return trend == null ? null : new PhotoCursor(Double.doubleToLongBits(trend.velocity), photoId);
+    }
+
+    public void onRate(final Photo photo, final Timestamp date) {
+        counters.computeIfAbsent(photo.getPhotoID(), k -> new Counter(windowHours)).add(hour(date.getTime()), 1);
+    }
+
+    public void onUnrate(final Photo photo, final Timestamp date) {
+        onUnrate(photo.getPhotoID(), date);
+    }
+
+    public void onUnrate(final Long photoId, final Timestamp date) {
+        Counter counter = counters.get(photoId);
+        if (counter != null) {
+            counter.add(hour(date.getTime()), -1);
+        }
+    }
+
+    /**
+     * Wczytuje oceny z okna dla zdjecia, ktore stalo sie publiczne i aktywne
+     *
+     * @param photo
+     */
+    public void onPublished(final Photo photo) {
+        long since = hour(System.currentTimeMillis()) - windowHours;
+        Counter counter = new Counter(windowHours);
+        for (Timestamp date : rateRepository.findDatesByPhotoID(photo.getPhotoID())) {
+            if (hour(date.getTime()) > since) {
+                counter.add(hour(date.getTime()), 1);
+            }
+        }
+        counters.put(photo.getPhotoID(), counter);
+    }
+
+    public void onRemoved(final Long photoId) {
+        counters.remove(photoId);
+    }
+
+    /**
+     * Przelicza ranking z licznikow w pamieci i usuwa liczniki bez ocen w oknie
+     */
+    @Scheduled(fixedDelayString = "${photos.trending.refresh-interval:60000}")
+    public void refresh() {
+        if (!loaded) {
+            loadWindow();
+        }
+
+        long now = hour(System.currentTimeMillis());
+        double[] weights = new double[windowHours];
+        double total = 0;
+        for (int age = 0; age < windowHours; age++) {
+            weights[age] = Math.pow(2, -age / halfLifeHours);
+            total += weights[age];
+        }
+
+        List<Trend> trends = new ArrayList<>();
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            int count = counter.count(now);
+            if (count <= 0) {
+                if (counter.latest() <= now - windowHours) {
+                    counters.remove(entry.getKey(), counter);
+                }
+                continue;
+            }
+            trends.add(new Trend(entry.getKey(), counter.weighted(now, weights) / total));
+        }
+
+        Trend[] order = trends.toArray(new Trend[0]);
+        Arrays.sort(order);
+        snapshot = new Snapshot(order);
+    }
+
+    private Snapshot current() {
+        if (!loaded) {
+            refresh();
+        }
+        return snapshot;
+    }
+
+    private synchronized void loadWindow() {
+        if (loaded) {
+            return;
+        }
+        long since = (hour(System.currentTimeMillis()) - windowHours + 1) * HOUR;
+        for (Object[] row : rateRepository.findDatesSince(ShareState.PUBLIC, PhotoState.ACTIVE, new Timestamp(since))) {
+            counters.computeIfAbsent((Long) row[0], k -> new Counter(windowHours)).add(hour(((Timestamp) row[1]).getTime()), 1);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Laduje kolejne zdjecia rankingu od pozycji from; pominiete (juz nie publiczne) uzupelnia
+     * nastepnymi, zeby niepelna strona oznaczala koniec rankingu
+     */
+    private List<Photo> load(Trend[] order, int from, int size) {
+        List<Photo> photos = new ArrayList<>();
+        int next = from;
+        while (photos.size() < size && next < order.length) {
+            List<Long> ids = new ArrayList<>();
+            for (; next < order.length && ids.size() < size - photos.size(); next++) {
+                ids.add(order[next].photoId);
+            }
+
+            Map<Long, Photo> byId = new HashMap<>();
+            for (Photo photo : photoRepository.findAllById(ids)) {
+                if (photo.getShareState() == ShareState.PUBLIC && photo.getPhotoState() == PhotoState.ACTIVE) {
+                    byId.put(photo.getPhotoID(), photo);
+                }
+            }
+            for (Long id : ids) {
+                if (byId.containsKey(id)) {
+                    photos.add(byId.get(id));
+                }
+            }
+        }
+        return photos;
+    }
+
+    private static long hour(long millis) {
+        return millis / HOUR;
+    }
+
+    /**
+     * Liczniki ocen z kolejnych godzin; slot dla godziny h to h % dlugosc okna
+     */
+    private static class Counter {
+        private final int[] counts;
+        private final long[] hours;
+
+        Counter(int window) {
+            counts = new int[window];
+            hours = new long[window];
+        }
+
+        synchronized void add(long hour, int delta) {
+            int slot = (int) (hour % counts.length);
+            if (hours[slot] != hour) {
+                if (hour < hours[slot]) {
+                    return;
+                }
+                hours[slot] = hour;
+                counts[slot] = 0;
+            }
+            counts[slot] += delta;
+        }
+
+        synchronized int count(long now) {
+            int sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (hours[i] > now - counts.length && hours[i] <= now) {
+                    sum += counts[i];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @param weights {waga godziny wedlug jej wieku, weights[0] dla biezacej}
+         */
+        synchronized double weighted(long now, double[] weights) {
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && hours[i] > now - counts.length && hours[i] <= now) {
+                    sum += counts[i] * weights[(int) (now - hours[i])];
+                }
+            }
+            return sum;
+        }
+
+        synchronized long latest() {
+            long latest = 0;
+            for (long hour : hours) {
+                latest = Math.max(latest, hour);
+            }
+            return latest;
+        }
+    }
+
+    private static class Trend implements Comparable<Trend> {
+        private final long photoId;
+        private final double velocity;
+
+        Trend(long photoId, double velocity) {
+            this.photoId = photoId;
+            this.velocity = velocity;
+        }
+
+        @Override
+        public int compareTo(Trend o) {
+            int byVelocity = Double.compare(o.velocity, velocity);
+            return byVelocity != 0 ? byVelocity : Long.compare(o.photoId, photoId);
+        }
+    }
+
+    private static class Snapshot {
+        private final Trend[] order;
+        private final Map<Long, Trend> byId = new HashMap<>();
+
+        Snapshot(Trend[] order) {
+            this.order = order;
+            for (Trend trend : order) {
+                byId.put(trend.photoId, trend);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Blob;
+import com.photos.api.models.Photo;
+import com.photos.api.models.UploadSession;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.UploadStatus;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.UploadSessionRepository;
+import com.photos.api.security.CurrentUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wysylanie oryginalow zdjec w czesciach: sesja, zapis kolejnych czesci pod wskazany offset
+ * i zakonczenie. Czesci sa zapisywane prosto ze strumienia zadania do pliku {sesja}.part
+ * w katalogu uzytkownika, bez buforowania calego pliku. Po zerwaniu polaczenia klient
+ * pyta o offset sesji i wysyla dalej od niego. Zakonczenie sprawdza SHA-256 calego pliku
+ * i przenosi go atomowo do magazynu blobow.
+ *
+ * @version 1.0
+ */
+
+@Service
+public class UploadService {
+
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Value("${photos.uploads.max-size:209715200}")
+    private long maxSize;
+
+    @Value("${photos.uploads.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${photos.uploads.expiry:86400000}")
+    private long expiry;
+
+    /**
+     * Sesje, do ktorych wlasnie trwa zapis; druga rownolegla czesc tej samej sesji jest odrzucana
+     */
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Zaklada sesje dla zdjecia bez pliku. Jesli dla zdjecia trwa juz sesja o tej samej dlugosci,
+     * zwraca ja, zeby klient mogl wznowic wysylanie. Gdy inne zdjecie uzytkownika ma juz plik o podanym
+     * sha256, zdjecie od razu na niego wskazuje, a zwrocone zadanie (bez id) ma offset rowny dlugosci
+     *
+     * @param request {photoID, length i opcjonalnie sha256 calego pliku}
+     * @return {sesja lub null, gdy zdjecie nie istnieje, ma juz plik albo dlugosc jest niepoprawna}
+     */
+    @Transactional
+    public UploadSession initiate(final UploadSession request) {
+        if (request.getPhotoID() == null || request.getLength() <= 0 || request.getLength() > maxSize) {
+            return null;
+        }
+        String sha256 = request.getSha256() != null ? request.getSha256().toLowerCase() : null;
+        if (sha256 != null && !BlobService.isHash(sha256)) {
+            return null;
+        }
+
+        User user = currentUser.getUser();
+        Photo photo = photoRepository.findByPhotoIDAndOwner(request.getPhotoID(), user);
+        if (photo == null || photo.getPath() != null || photo.getPhotoState() == PhotoState.DELETED) {
+            return null;
+        }
+
+        // sam skrot nie dowodzi posiadania tresci, wiec bez wysylania mozna uzyc tylko wlasnego bloba
+        Blob blob = sha256 != null && photoRepository.existsByOwnerAndPathAndPhotoStateNot(user, sha256, PhotoState.DELETED) ?
+                blobService.reuse(sha256) : null;
+        if (blob != null && blob.getSize() == request.getLength()) {
+            attach(photo, blob);
+            request.setOffset(request.getLength());
+            return request;
+        }
+
+        UploadSession existing = uploadSessionRepository.findFirstByPhotoIDAndUserID(photo.getPhotoID(), user.getUserID());
+        if (existing != null) {
+            if (existing.getLength() == request.getLength() && (sha256 == null || sha256.equals(existing.getSha256()))) {
+                return existing;
+            }
+            if (!cancel(existing.getId())) {
+                return null;
+            }
+        }
+
+        try {
+            UploadSession session = new UploadSession();
+            session.setId(UUID.randomUUID().toString());
+            session.setUserID(user.getUserID());
+            session.setEmail(currentUser.getEmail());
+            session.setPhotoID(photo.getPhotoID());
+            session.setLength(request.getLength());
+            session.setSha256(sha256);
+            session.setCreated(new Timestamp(System.currentTimeMillis()));
+            session.setUpdated(session.getCreated());
+            Files.createDirectories(ImageService.userDirectory(session.getEmail()));
+            return uploadSessionRepository.save(session);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public UploadSession getSession(final String id) {
+        return uploadSessionRepository.findByIdAndUserID(id, currentUser.getUser().getUserID());
+    }
+
+    /**
+     * Zapisuje czesc pliku zaczynajaca sie od offset. Offset musi byc rowny offsetowi sesji,
+     * a sesja przesuwa sie dopiero po trwalym zapisie calej czesci i zgodnosci sumy kontrolnej
+     *
+     * @param id
+     * @param offset
+     * @param checksum {opcjonalny SHA-256 czesci w postaci hex}
+     * @param in {tresc czesci}
+     * @return
+     */
+    public UploadStatus writeChunk(final String id, final long offset, final String checksum, final InputStream in) {
+        if (!active.add(id)) {
+            return UploadStatus.BUSY;
+        }
+        try {
+            // sesja czytana dopiero pod blokada, inaczej offset moze pochodzic sprzed rownoleglego zapisu
+            UploadSession session = getSession(id);
+            if (session == null) {
+                return UploadStatus.NOT_FOUND;
+            }
+            if (offset != session.getOffset()) {
+                return UploadStatus.OFFSET_MISMATCH;
+            }
+
+            MessageDigest digest = Sha256.newDigest();
+            long position = offset;
+            try (FileChannel channel = FileChannel.open(partPath(session), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(in)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    if (position + buffer.remaining() > session.getLength()) {
+                        return UploadStatus.TOO_LARGE;
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+                channel.force(false);
+            }
+
+            if (checksum != null && !checksum.equalsIgnoreCase(Sha256.hex(digest.digest()))) {
+                return UploadStatus.CHECKSUM_MISMATCH;
+            }
+            setOffset(session, position);
+            return UploadStatus.OK;
+        } catch (IOException e) {
+            return UploadStatus.FAILED;
+        } finally {
+            active.remove(id);
+        }
+    }
+
+    /**
+     * Sprawdza kompletnosc i SHA-256 pliku, przekazuje go do magazynu blobow i konczy sesje.
+     * Przy niezgodnym skrocie sesja wraca do offsetu 0
+     *
+     * @param id
+     * @return
+     */
+    @Transactional
+    public UploadStatus complete(final String id) {
+        if (!active.add(id)) {
+            return UploadStatus.BUSY;
+        }
+        try {
+            UploadSession session = getSession(id);
+            if (session == null) {
+                return UploadStatus.NOT_FOUND;
+            }
+            if (session.getOffset() < session.getLength()) {
+                return UploadStatus.INCOMPLETE;
+            }
+            Photo photo = photoRepository.findByPhotoIDAndOwner(session.getPhotoID(), currentUser.getUser());
+            if (photo == null || photo.getPath() != null || photo.getPhotoState() == PhotoState.DELETED) {
+                return UploadStatus.FAILED;
+            }
+
+            Path part = partPath(session);
+            String sha256 = digest(part, session.getLength());
+            if (session.getSha256() != null && !session.getSha256().equals(sha256)) {
+                try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+                setOffset(session, 0);
+                return UploadStatus.CHECKSUM_MISMATCH;
+            }
+
+            Blob blob = blobService.adopt(part, sha256, session.getLength());
+            attach(photo, blob);
+            uploadSessionRepository.delete(session);
+            return UploadStatus.OK;
+        } catch (IOException e) {
+            return UploadStatus.FAILED;
+        } finally {
+            active.remove(id);
+        }
+    }
+
+    private void attach(Photo photo, Blob blob) {
+        photo.setPath(blob.getHash());
+        photoRepository.save(photo);
+        blobService.retain(blob.getHash());
+        blobService.scheduleRenditions(blob.getHash());
+    }
+
+    public boolean cancel(final String id) {
+        UploadSession session = getSession(id);
+        if (session == null || !active.add(id)) {
+            return false;
+        }
+        try {
+            discard(session);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            active.remove(id);
+        }
+        return true;
+    }
+
+    /**
+     * Usuwa porzucone sesje wraz z plikami czesciowymi
+     */
+    @Scheduled(fixedDelayString = "${photos.uploads.purge-interval:3600000}")
+    public void purge() {
+        Timestamp before = new Timestamp(System.currentTimeMillis() - expiry);
+        for (UploadSession session : uploadSessionRepository.findAllByUpdatedBefore(before)) {
+            if (!active.add(session.getId())) {
+                continue;
+            }
+            try {
+                discard(session);
+            } catch (Exception ignored) {
+            } finally {
+                active.remove(session.getId());
+            }
+        }
+    }
+
+    private void setOffset(UploadSession session, long offset) {
+        session.setOffset(offset);
+        session.setUpdated(new Timestamp(System.currentTimeMillis()));
+        uploadSessionRepository.save(session);
+    }
+
+    private void discard(UploadSession session) throws IOException {
+        Files.deleteIfExists(partPath(session));
+        uploadSessionRepository.delete(session);
+    }
+
+    private Path partPath(UploadSession session) {
+        return ImageService.userDirectory(session.getEmail()).resolve(session.getId() + ".part");
+    }
+
+    /**
+     * Obcina plik do dlugosci sesji (po przerwanym zapisie moga zostac nadmiarowe bajty) i liczy jego SHA-256
+     */
+    private String digest(Path part, long length) throws IOException {
+        MessageDigest digest = Sha256.newDigest();
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Sha256.hex(digest.digest());
+    }
+}
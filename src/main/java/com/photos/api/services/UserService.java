@@ -1,23 +1,21 @@
 package com.photos.api.services;
 
+import com.photos.api.models.AccountDeletion;
 import com.photos.api.models.Category;
 import com.photos.api.models.User;
 import com.photos.api.models.enums.Role;
 import com.photos.api.models.repositories.*;
+import com.photos.api.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.UUID;
 
-import static com.photos.api.services.ImageService.UPLOAD_ROOT;
-
 /**
  * @author Micha Królewski on 2018-04-14.
  * @version 1.0
@@ -28,22 +26,19 @@ import static com.photos.api.services.ImageService.UPLOAD_ROOT;
 public class UserService {
 
     @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private CategoryRepository categoryRepository;
+    private CurrentUser currentUser;
 
     @Autowired
-    private PhotoRepository photoRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private PhotoToCategoryRepository PTCRepository;
+    private CategoryRepository categoryRepository;
 
     @Autowired
-    private ShareRepository shareRepository;
+    private CategoryService categoryService;
 
     @Autowired
-    private TagRepository tagRepository;
+    private AccountDeletionService accountDeletionService;
 
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
@@ -54,7 +49,7 @@ public class UserService {
     }
 
     public User getOne(final String email) {
-        String sessionEmail = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
+        String sessionEmail = currentUser.getEmail();
         User user = userRepository.findByEmail(email);
 
         if (!email.equals(sessionEmail) && user != null) {
@@ -77,12 +72,13 @@ public class UserService {
             user.setPassword(bCryptPasswordEncoder.encode(user.getPassword()));
             user.setUuid(UUID.randomUUID().toString());
             userRepository.save(user);
-            Files.createDirectory(Paths.get(UPLOAD_ROOT + "/" + user.getEmail()));
+            Files.createDirectories(ImageService.userDirectory(user.getEmail()));
             Category category = new Category();
             category.setName("ARCHIVES");
             category.setParentCategory(null);
             category.setUser(user);
             categoryRepository.save(category);
+            categoryService.addToClosure(category);
 
         } else {
             return false;
@@ -91,9 +87,8 @@ public class UserService {
     }
 
     public boolean updateUser(final User user) {
-        String email = ((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
 
-        User userToUpdate = userRepository.findByEmail(email);
+        User userToUpdate = currentUser.getUser();
 
         if (user.getFirstName() != null)
             userToUpdate.setFirstName(user.getFirstName());
@@ -113,27 +108,15 @@ public class UserService {
         return true;
     }
 
-    public boolean deleteUser() {
-        User user = userRepository.findByEmail(((org.springframework.security.core.userdetails.User) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername());
-
+    public AccountDeletion deleteUser(final String token) {
         try {
-
-            List<Category> categories = categoryRepository.findAllByUser(user);
-            for (Category category : categories) {
-                PTCRepository.deleteAllByCategory(category);
-            }
-            categoryRepository.deleteAllByUser(user);
-
-            shareRepository.deleteAllByUser(user);
-            tagRepository.deleteAllByUser(user);
-            photoRepository.deleteAllByOwner(user);
-
-            // TODO: 2018-05-19 delete folder with images
-            userRepository.delete(user);
+            return accountDeletionService.request(token);
         } catch (Exception e) {
-            return false;
+            return null;
         }
+    }
 
-        return true;
+    public AccountDeletion getDeletion(final Long id) {
+        return accountDeletionService.getDeletion(id);
     }
 }
@@ -38,6 +38,28 @@ INSERT INTO category (id,name,parent_category,user) VALUES (1005,'anime',null,10
 INSERT INTO category (id,name,parent_category,user) VALUES (1006,'animals',null,1005);
 INSERT INTO category (id,name,parent_category,user) VALUES (1007,'cars',null,1005);
 
+/*
+    INSERT CATEGORY CLOSURE
+*/
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1001,1001,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1002,1002,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1003,1003,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1004,1004,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1005,1005,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1006,1006,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1007,1007,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1008,1008,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1009,1009,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1010,1010,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1011,1011,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1012,1012,0);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1001,1002,1);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1001,1008,1);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1001,1009,1);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1002,1010,1);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1001,1010,2);
+INSERT INTO category_closure (ancestor,descendant,depth) VALUES (1011,1012,1);
+
 /*
     INSERT PHOTO TO CATEGORY
 */
@@ -61,6 +83,7 @@ INSERT INTO tag (id,name,photo,user) VALUES (1004,'wholidays',1001,1000);
 INSERT INTO tag (id,name,photo,user) VALUES (1006,'wholidays',1002,1000);
 INSERT INTO tag (id,name,photo,user) VALUES (1005,'wpolishboy',1001,1000);
 INSERT INTO tag (id,name,photo,user) VALUES (1003,'sunrise',1005,1002);
+INSERT INTO tag_sequence (next_val) VALUES (1007);
 
 /*
     INSERT SHARE
@@ -82,3 +105,5 @@ INSERT INTO rate (id,date,photo,user) VALUES (1004,'18-03-12 10:34:09',1002,1001
 INSERT INTO rate (id,date,photo,user) VALUES (1005,'18-03-12 10:34:09',1004,1003);
 INSERT INTO rate (id,date,photo,user) VALUES (1006,'18-03-12 10:34:09',1006,1005);
 
+UPDATE photo SET rate_count = (SELECT COUNT(*) FROM rate WHERE rate.photo = photo.id);
+
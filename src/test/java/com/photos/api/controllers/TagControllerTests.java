@@ -0,0 +1,133 @@
+package com.photos.api.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import com.photos.api.models.Photo;
+import com.photos.api.models.Tag;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.TagRepository;
+import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.services.TagIndex;
+import com.photos.api.services.TagService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Dodawanie tagow przez POST /tags i POST /tags/bulk razem z aktualizacja indeksu tagow.
+ *
+ * @version 1.0
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc(addFilters = false)
+@WithMockUser(username = TagControllerTests.EMAIL)
+public class TagControllerTests {
+
+    static final String EMAIL = "tags@photos.com";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Photo photo;
+
+    @Before
+    public void setup() {
+        User user = userRepository.findByEmail(EMAIL);
+        if (user == null) {
+            user = userRepository.save(new User(EMAIL, "a", "b", "x", "USER"));
+        }
+        photo = photoRepository.save(new Photo("tags", user, null, new Timestamp(1000), "", ShareState.PUBLIC, PhotoState.ACTIVE));
+    }
+
+    @Test
+    public void addTags() throws Exception {
+        String sea = "sea" + photo.getPhotoID();
+        String sun = "sun" + photo.getPhotoID();
+
+        MockHttpServletResponse response = mvc.perform(post("/tags").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + tag(photo.getPhotoID(), sea) + "," + tag(photo.getPhotoID(), sun) + "]")).andReturn().getResponse();
+
+        assertEquals(201, response.getStatus());
+        assertEquals(2, tagRepository.findAllByPhoto(photo).size());
+        assertArrayEquals(new long[]{photo.getPhotoID()}, tagIndex.all(Arrays.asList(sea, sun)));
+    }
+
+    @Test
+    public void addTagsBulk() throws Exception {
+        String sea = "sea" + photo.getPhotoID();
+
+        MockHttpServletResponse response = mvc.perform(post("/tags/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + tag(photo.getPhotoID(), sea) + "," + tag(photo.getPhotoID(), sea.toUpperCase()) + ","
+                        + tag(-1L, sea) + ",{\"name\":\"\"}]")).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        List<String> statuses = JsonPath.read(response.getContentAsString(), "$[*].status");
+        assertEquals(Arrays.asList("CREATED", "DUPLICATE", "PHOTO_NOT_FOUND", "INVALID"), statuses);
+        assertEquals(1, tagRepository.findAllByPhoto(photo).size());
+        assertArrayEquals(new long[]{photo.getPhotoID()}, tagIndex.all(Collections.singletonList(sea)));
+    }
+
+    @Test
+    public void rolledBackTagsStayOutOfIndex() {
+        String sea = "sea" + photo.getPhotoID();
+        Tag tag = new Tag();
+        tag.setPhoto(photo);
+        tag.setName(sea);
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            tagService.addTagsBulk(Collections.singletonList(tag));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(0, tagRepository.findAllByPhoto(photo).size());
+        assertEquals(0, tagIndex.all(Collections.singletonList(sea)).length);
+    }
+
+    private static String tag(Long photoID, String name) {
+        return "{\"photo\":{\"photoID\":" + photoID + "},\"name\":\"" + name + "\"}";
+    }
+}
@@ -0,0 +1,176 @@
+package com.photos.api.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import com.photos.api.models.Photo;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.services.BlobStore;
+import com.photos.api.services.ImageService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Protokol wysylania w czesciach: wznowienie sesji, niezgodny offset i niezgodna suma kontrolna czesci lub calosci.
+ *
+ * @version 1.0
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc(addFilters = false)
+@WithMockUser(username = UploadControllerTests.EMAIL)
+public class UploadControllerTests {
+
+    static final String EMAIL = "uploads@photos.com";
+
+    private static final int LENGTH = 300000;
+    private static final int CHUNK = 100000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    private Photo photo;
+    private byte[] content;
+    private String sha256;
+
+    @Before
+    public void setup() throws Exception {
+        ImageService.UPLOAD_ROOT = folder.getRoot().getPath();
+        User user = userRepository.findByEmail(EMAIL);
+        if (user == null) {
+            user = userRepository.save(new User(EMAIL, "a", "b", "x", "USER"));
+        }
+        photo = photoRepository.save(new Photo("upload", user, null, new Timestamp(1000), "", ShareState.PUBLIC, PhotoState.ACTIVE));
+        content = new byte[LENGTH];
+        new Random(photo.getPhotoID()).nextBytes(content);
+        sha256 = sha256(content);
+    }
+
+    @Test
+    public void resumeReturnsSameSessionAndOffset() throws Exception {
+        String id = initiate(sha256);
+        assertEquals(204, chunk(id, 0, part(0, CHUNK), null).getStatus());
+
+        MockHttpServletResponse resumed = mvc.perform(post("/images/uploads").contentType(MediaType.APPLICATION_JSON)
+                .content(session(sha256))).andReturn().getResponse();
+        assertEquals(id, JsonPath.read(resumed.getContentAsString(), "$.id"));
+        assertEquals(String.valueOf(CHUNK), resumed.getHeader("Upload-Offset"));
+        MockHttpServletResponse state = mvc.perform(get("/images/uploads/" + id)).andReturn().getResponse();
+        assertEquals(String.valueOf(CHUNK), state.getHeader("Upload-Offset"));
+        assertEquals(String.valueOf(LENGTH), state.getHeader("Upload-Length"));
+
+        assertEquals(204, chunk(id, CHUNK, part(CHUNK, LENGTH), null).getStatus());
+        assertEquals(201, complete(id).getStatus());
+        assertEquals(sha256, photoRepository.findByPhotoID(photo.getPhotoID()).getPath());
+        assertArrayEquals(content, Files.readAllBytes(blobStore.localPath(sha256)));
+        assertEquals(404, mvc.perform(get("/images/uploads/" + id)).andReturn().getResponse().getStatus());
+    }
+
+    @Test
+    public void offsetMismatchReturnsCurrentOffset() throws Exception {
+        String id = initiate(sha256);
+        assertEquals(204, chunk(id, 0, part(0, CHUNK), null).getStatus());
+
+        MockHttpServletResponse repeated = chunk(id, 0, part(0, CHUNK), null);
+        assertEquals(409, repeated.getStatus());
+        assertEquals(String.valueOf(CHUNK), repeated.getHeader("Upload-Offset"));
+        MockHttpServletResponse skipped = chunk(id, 2 * CHUNK, part(2 * CHUNK, LENGTH), null);
+        assertEquals(409, skipped.getStatus());
+        assertEquals(String.valueOf(CHUNK), skipped.getHeader("Upload-Offset"));
+        assertEquals(409, complete(id).getStatus());
+    }
+
+    @Test
+    public void chunkChecksumMismatchDiscardsChunk() throws Exception {
+        String id = initiate(sha256);
+        byte[] first = part(0, CHUNK);
+
+        assertEquals(422, chunk(id, 0, first, sha256).getStatus());
+        assertEquals("0", mvc.perform(get("/images/uploads/" + id)).andReturn().getResponse().getHeader("Upload-Offset"));
+        assertEquals(204, chunk(id, 0, first, sha256(first)).getStatus());
+    }
+
+    @Test
+    public void fileChecksumMismatchIsRejectedOnComplete() throws Exception {
+        String id = initiate(sha256(new byte[]{1}));
+        assertEquals(204, chunk(id, 0, content, null).getStatus());
+
+        assertEquals(422, complete(id).getStatus());
+        assertEquals(null, photoRepository.findByPhotoID(photo.getPhotoID()).getPath());
+    }
+
+    private String initiate(String sha256) throws Exception {
+        MockHttpServletResponse response = mvc.perform(post("/images/uploads").contentType(MediaType.APPLICATION_JSON)
+                .content(session(sha256))).andReturn().getResponse();
+        assertEquals(201, response.getStatus());
+        assertEquals("0", response.getHeader("Upload-Offset"));
+        return JsonPath.read(response.getContentAsString(), "$.id");
+    }
+
+    private String session(String sha256) {
+        return "{\"photoID\":" + photo.getPhotoID() + ",\"length\":" + LENGTH + ",\"sha256\":\"" + sha256 + "\"}";
+    }
+
+    private MockHttpServletResponse chunk(String id, long offset, byte[] data, String checksum) throws Exception {
+        return mvc.perform(checksum == null ?
+                put("/images/uploads/" + id).contentType(MediaType.APPLICATION_OCTET_STREAM).header("Upload-Offset", offset).content(data) :
+                put("/images/uploads/" + id).contentType(MediaType.APPLICATION_OCTET_STREAM).header("Upload-Offset", offset)
+                        .header("Upload-Checksum", checksum).content(data)).andReturn().getResponse();
+    }
+
+    private MockHttpServletResponse complete(String id) throws Exception {
+        return mvc.perform(post("/images/uploads/" + id + "/complete")).andReturn().getResponse();
+    }
+
+    private byte[] part(int from, int to) {
+        return Arrays.copyOfRange(content, from, to);
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.photos.api.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.Cookie;
+import java.util.concurrent.TimeUnit;
+
+import static com.photos.api.security.SecurityConstants.JWT;
+import static com.photos.api.security.SecurityConstants.generateToken;
+
+/**
+ * Przepustowosc JwtAuthorizationFilter z cache claimow i bez niego (cache o rozmiarze 0).
+ * Uruchomienie: mvn test-compile, a potem metoda main z classpath testow.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private JwtAuthorizationFilter filter;
+    private Cookie cookie;
+
+    @Setup
+    public void setup() {
+        TokenClaimsCache tokenClaimsCache = new TokenClaimsCache();
+        ReflectionTestUtils.setField(tokenClaimsCache, "maximumSize", cached ? 10000L : 0L);
+        tokenClaimsCache.init();
+
+        CustomUserDetailsService customUserDetailsService = new CustomUserDetailsService() {
+            @Override
+            public boolean isTokenActive(String token) {
+                return true;
+            }
+
+            @Override
+            public boolean isUserActive(Long userID) {
+                return true;
+            }
+        };
+        filter = new JwtAuthorizationFilter(authentication -> authentication, customUserDetailsService, tokenClaimsCache);
+
+        UserPrincipal principal = new UserPrincipal("benchmark@photos.com", "", AuthorityUtils.createAuthorityList("USER"), 1L);
+        cookie = new Cookie(JWT, generateToken(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())));
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/photos");
+        request.setCookies(cookie);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthorizationFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,186 @@
+package com.photos.api.services;
+
+import com.photos.api.models.Category;
+import com.photos.api.models.Photo;
+import com.photos.api.models.PhotoToCategory;
+import com.photos.api.models.User;
+import com.photos.api.models.enums.PhotoState;
+import com.photos.api.models.enums.ShareState;
+import com.photos.api.models.repositories.CategoryClosureRepository;
+import com.photos.api.models.repositories.CategoryRepository;
+import com.photos.api.models.repositories.PhotoRepository;
+import com.photos.api.models.repositories.PhotoToCategoryRepository;
+import com.photos.api.models.repositories.UserRepository;
+import com.photos.api.security.UserPrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Przenoszenie i usuwanie poddrzew kategorii razem z tabela domkniecia i flaga hasCategory zdjec.
+ *
+ * @version 1.0
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class CategoryServiceTests {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private PhotoToCategoryService ptcService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository closureRepository;
+
+    @Autowired
+    private PhotoToCategoryRepository ptcRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Category root;
+    private Category a;
+    private Category b;
+    private Category c;
+    private Category other;
+
+    /**
+     * root / a / b / c oraz osobno other
+     */
+    @Before
+    public void setup() {
+        user = userRepository.save(new User("categories@photos.com", "a", "b", "x", "USER"));
+        UserPrincipal principal = new UserPrincipal(user.getEmail(), "", AuthorityUtils.createAuthorityList("USER"), user.getUserID());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        root = add("root", null);
+        a = add("a", root);
+        b = add("b", a);
+        c = add("c", b);
+        other = add("other", null);
+    }
+
+    @After
+    public void teardown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void moveSubtree() {
+        assertTrue(categoryService.editCategory(b.getCategoryID(), edit("b", other)));
+
+        assertEquals(2, categoryService.getSubtree(root.getCategoryID()).size());
+        assertEquals(3, categoryService.getSubtree(other.getCategoryID()).size());
+        assertTrue(closureRepository.existsByAncestorAndDescendant(other.getCategoryID(), c.getCategoryID()));
+        assertFalse(closureRepository.existsByAncestorAndDescendant(root.getCategoryID(), c.getCategoryID()));
+        assertFalse(closureRepository.existsByAncestorAndDescendant(a.getCategoryID(), b.getCategoryID()));
+        assertEquals(other.getCategoryID(), categoryRepository.findById(b.getCategoryID()).get().getparent_id());
+    }
+
+    @Test
+    public void moveToRoot() {
+        assertTrue(categoryService.editCategory(a.getCategoryID(), edit("a", null)));
+
+        assertEquals(1, categoryService.getSubtree(root.getCategoryID()).size());
+        assertEquals(3, categoryService.getSubtree(a.getCategoryID()).size());
+        assertFalse(closureRepository.existsByAncestorAndDescendant(root.getCategoryID(), c.getCategoryID()));
+    }
+
+    @Test
+    public void moveIntoOwnSubtreeIsRejected() {
+        assertFalse(categoryService.editCategory(a.getCategoryID(), edit("a", c)));
+        assertFalse(categoryService.editCategory(a.getCategoryID(), edit("a", a)));
+
+        assertEquals(4, categoryService.getSubtree(root.getCategoryID()).size());
+    }
+
+    @Test
+    public void deleteSubtree() {
+        Photo onlyInSubtree = photo("p1");
+        Photo alsoElsewhere = photo("p2");
+        ptcRepository.save(new PhotoToCategory(onlyInSubtree, c));
+        ptcRepository.save(new PhotoToCategory(alsoElsewhere, b));
+        ptcRepository.save(new PhotoToCategory(alsoElsewhere, other));
+        ptcRepository.flush();
+        long closureRows = closureRepository.count();
+
+        assertTrue(categoryService.deleteCategory(a.getCategoryID()));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(2, categoryRepository.findAllByUser(user).size());
+        assertEquals(1, categoryService.getSubtree(root.getCategoryID()).size());
+        // a, b, c: kazdy z wierszem do siebie i do kazdego przodka
+        assertEquals(closureRows - 9, closureRepository.count());
+        assertFalse(photoRepository.findByPhotoID(onlyInSubtree.getPhotoID()).isHasCategory());
+        assertTrue(photoRepository.findByPhotoID(alsoElsewhere.getPhotoID()).isHasCategory());
+        assertNotNull(ptcRepository.findFirstByPhoto(photoRepository.findByPhotoID(alsoElsewhere.getPhotoID())));
+    }
+
+    @Test
+    public void deletedPhotoCannotBeCategorized() {
+        Photo photo = photo("p1");
+        assertTrue(ptcService.setCategory(new PhotoToCategory(photo, a)));
+        photo.setPhotoState(PhotoState.DELETED);
+        photoRepository.save(photo);
+
+        assertFalse(ptcService.setCategory(new PhotoToCategory(photo, b)));
+        assertFalse(ptcService.setNewCategory(new PhotoToCategory(photo, a), other));
+        assertEquals(a.getCategoryID(), ptcRepository.findFirstByPhoto(photo).getCategory().getCategoryID());
+    }
+
+    private Category add(String name, Category parent) {
+        Category category = new Category();
+        category.setName(name);
+        category.setParentCategory(parent);
+        assertTrue(categoryService.addCategory(category));
+        return category;
+    }
+
+    private static Category edit(String name, Category parent) {
+        Category category = new Category();
+        category.setName(name);
+        category.setParentCategory(parent);
+        return category;
+    }
+
+    private Photo photo(String description) {
+        Photo photo = new Photo(description, user, null, new Timestamp(1000), "", ShareState.PUBLIC, PhotoState.ACTIVE);
+        photo.setHasCategory(true);
+        return photoRepository.save(photo);
+    }
+}
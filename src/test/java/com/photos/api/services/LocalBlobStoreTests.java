@@ -0,0 +1,97 @@
+package com.photos.api.services;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LocalBlobStore na katalogu tymczasowym: zapis z pliku i ze strumienia, odczyt zakresu, usuwanie.
+ *
+ * @version 1.0
+ */
+
+public class LocalBlobStoreTests {
+
+    private static final String KEY = "abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalBlobStore store;
+    private byte[] content;
+
+    @Before
+    public void setup() {
+        store = new LocalBlobStore();
+        ReflectionTestUtils.setField(store, "root", folder.getRoot().getPath());
+        content = new byte[100000];
+        new Random(1).nextBytes(content);
+    }
+
+    @Test
+    public void putMovesFileIntoShardedDirectory() throws Exception {
+        Path temp = store.createTempFile();
+        Files.write(temp, content);
+
+        store.put(KEY, temp);
+
+        assertFalse(Files.exists(temp));
+        assertEquals(folder.getRoot().toPath().resolve("ab").resolve("cd").resolve(KEY), store.localPath(KEY));
+        assertTrue(store.exists(KEY));
+        assertEquals(content.length, store.size(KEY));
+        try (InputStream in = store.get(KEY)) {
+            assertArrayEquals(content, ByteStreams.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void putStreamLeavesNoTempFiles() throws Exception {
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        try (InputStream in = store.get(KEY)) {
+            assertArrayEquals(content, ByteStreams.toByteArray(in));
+        }
+        try (Stream<Path> temps = Files.list(folder.getRoot().toPath().resolve("tmp"))) {
+            assertEquals(0, temps.count());
+        }
+    }
+
+    @Test
+    public void rangeRead() throws Exception {
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        try (InputStream in = store.get(KEY, 1000, 1999)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), ByteStreams.toByteArray(in));
+        }
+        try (InputStream in = store.get(KEY, content.length - 10, content.length - 1)) {
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), ByteStreams.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void deleteAndMissingKey() throws Exception {
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        store.delete(KEY);
+
+        assertFalse(store.exists(KEY));
+        assertEquals(-1, store.size(KEY));
+        store.delete(KEY);
+    }
+}
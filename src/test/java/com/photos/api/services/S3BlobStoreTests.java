@@ -0,0 +1,322 @@
+package com.photos.api.services;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * S3BlobStore na wbudowanym serwerze HTTP, ktory odpowiada jak MinIO w trybie path-style:
+ * zwykly PUT, wysylanie w czesciach, GET z Range, HEAD i DELETE.
+ *
+ * @version 1.0
+ */
+
+public class S3BlobStoreTests {
+
+    private static final String BUCKET = "photos";
+    private static final String KEY = "abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeS3 s3;
+    private S3BlobStore store;
+
+    @Before
+    public void setup() throws IOException {
+        s3 = new FakeS3();
+        store = new S3BlobStore();
+        ReflectionTestUtils.setField(store, "endpoint", "http://127.0.0.1:" + s3.port());
+        ReflectionTestUtils.setField(store, "region", "us-east-1");
+        ReflectionTestUtils.setField(store, "bucket", BUCKET);
+        ReflectionTestUtils.setField(store, "accessKey", "access");
+        ReflectionTestUtils.setField(store, "secretKey", "secret");
+        ReflectionTestUtils.setField(store, "pathStyle", true);
+        ReflectionTestUtils.setField(store, "multipartThreshold", 1024 * 1024L);
+        ReflectionTestUtils.setField(store, "partSize", 256 * 1024L);
+        ReflectionTestUtils.setField(store, "uploadThreads", 2);
+        store.init();
+    }
+
+    @After
+    public void teardown() {
+        store.destroy();
+        s3.stop();
+    }
+
+    @Test
+    public void putSmallFile() throws Exception {
+        byte[] content = random(100000);
+        Path file = folder.newFile().toPath();
+        Files.write(file, content);
+
+        store.put(KEY, file);
+
+        assertFalse(Files.exists(file));
+        assertEquals(0, s3.multipartUploads.get());
+        assertTrue(store.exists(KEY));
+        assertEquals(content.length, store.size(KEY));
+        try (InputStream in = store.get(KEY)) {
+            assertArrayEquals(content, ByteStreams.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void putLargeFileInParts() throws Exception {
+        byte[] content = random(1536 * 1024 + 123);
+        Path file = folder.newFile().toPath();
+        Files.write(file, content);
+
+        store.put(KEY, file);
+
+        assertEquals(1, s3.multipartUploads.get());
+        assertEquals(7, s3.parts.get());
+        assertArrayEquals(content, s3.objects.get(BUCKET + "/" + KEY));
+        assertEquals(content.length, store.size(KEY));
+    }
+
+    @Test
+    public void putStream() throws Exception {
+        byte[] content = random(5000);
+
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        assertArrayEquals(content, s3.objects.get(BUCKET + "/" + KEY));
+    }
+
+    @Test
+    public void rangeRead() throws Exception {
+        byte[] content = random(100000);
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        try (InputStream in = store.get(KEY, 1000, 1999)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), ByteStreams.toByteArray(in));
+        }
+        try (InputStream in = store.get(KEY, content.length - 10, content.length - 1)) {
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), ByteStreams.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void deleteAndMissingKey() throws Exception {
+        byte[] content = random(10);
+        store.put(KEY, new ByteArrayInputStream(content), content.length);
+
+        store.delete(KEY);
+
+        assertFalse(store.exists(KEY));
+        assertEquals(-1, store.size(KEY));
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Minimalny serwer zgodny z S3 dla jednego kubelka, trzymajacy obiekty w pamieci
+     */
+    private static class FakeS3 {
+
+        private final HttpServer server;
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, String> etags = new ConcurrentHashMap<>();
+        private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        private final AtomicInteger multipartUploads = new AtomicInteger();
+        private final AtomicInteger parts = new AtomicInteger();
+
+        FakeS3() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                try {
+                    handle(exchange);
+                } catch (RuntimeException e) {
+                    send(exchange, 500, new byte[0]);
+                } finally {
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (method.equals("POST") && query.containsKey("uploads")) {
+                String uploadId = "upload-" + multipartUploads.incrementAndGet();
+                uploads.put(uploadId, new TreeMap<>());
+                body(exchange);
+                sendXml(exchange, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key(path)
+                        + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if (method.equals("GET") && query.containsKey("uploadId")) {
+                // TransferManager sprawdza przed wysylaniem, ktore czesci juz sa na serwerze
+                sendXml(exchange, "<ListPartsResult><Bucket>" + BUCKET + "</Bucket><Key>" + key(path) + "</Key><UploadId>"
+                        + query.get("uploadId") + "</UploadId><IsTruncated>false</IsTruncated></ListPartsResult>");
+            } else if (method.equals("PUT") && query.containsKey("uploadId")) {
+                byte[] part = body(exchange);
+                uploads.get(query.get("uploadId")).put(Integer.valueOf(query.get("partNumber")), part);
+                parts.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", "\"" + md5(part) + "\"");
+                send(exchange, 200, new byte[0]);
+            } else if (method.equals("POST") && query.containsKey("uploadId")) {
+                body(exchange);
+                ByteArrayOutputStream object = new ByteArrayOutputStream();
+                Map<Integer, byte[]> upload = uploads.remove(query.get("uploadId"));
+                for (byte[] part : upload.values()) {
+                    object.write(part);
+                }
+                objects.put(path, object.toByteArray());
+                etags.put(path, md5(object.toByteArray()) + "-" + upload.size());
+                sendXml(exchange, "<CompleteMultipartUploadResult><Location>http://127.0.0.1/" + path + "</Location><Bucket>"
+                        + BUCKET + "</Bucket><Key>" + key(path) + "</Key><ETag>\"" + etags.get(path)
+                        + "\"</ETag></CompleteMultipartUploadResult>");
+            } else if (method.equals("PUT")) {
+                byte[] object = body(exchange);
+                objects.put(path, object);
+                etags.put(path, md5(object));
+                exchange.getResponseHeaders().set("ETag", "\"" + etags.get(path) + "\"");
+                send(exchange, 200, new byte[0]);
+            } else if (method.equals("DELETE")) {
+                objects.remove(path);
+                etags.remove(path);
+                send(exchange, 204, null);
+            } else if (!objects.containsKey(path)) {
+                if (method.equals("HEAD")) {
+                    send(exchange, 404, null);
+                } else {
+                    exchange.getResponseHeaders().set("Content-Type", "application/xml");
+                    send(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>missing</Message></Error>".getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                byte[] object = objects.get(path);
+                exchange.getResponseHeaders().set("ETag", "\"" + etags.get(path) + "\"");
+                exchange.getResponseHeaders().set("Last-Modified", "Mon, 01 Jan 2018 00:00:00 GMT");
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (method.equals("HEAD")) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+                    send(exchange, 200, null);
+                } else if (range != null) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    int start = Integer.parseInt(bounds[0]);
+                    int end = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.length);
+                    send(exchange, 206, Arrays.copyOfRange(object, start, end + 1));
+                } else {
+                    send(exchange, 200, object);
+                }
+            }
+        }
+
+        /**
+         * Czyta tresc zadania, rozpakowujac kodowanie aws-chunked uzywane przez SDK przy podpisywaniu przez HTTP
+         */
+        private static byte[] body(HttpExchange exchange) throws IOException {
+            byte[] body = ByteStreams.toByteArray(exchange.getRequestBody());
+            String sha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+            if (sha256 == null || !sha256.startsWith("STREAMING-")) {
+                return body;
+            }
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            int position = 0;
+            while (true) {
+                int lineEnd = indexOf(body, position);
+                String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+                int size = Integer.parseInt(header.substring(0, header.indexOf(';')), 16);
+                if (size == 0) {
+                    return decoded.toByteArray();
+                }
+                decoded.write(body, lineEnd + 2, size);
+                position = lineEnd + 2 + size + 2;
+            }
+        }
+
+        private static int indexOf(byte[] body, int from) {
+            for (int i = from; i < body.length - 1; i++) {
+                if (body[i] == '\r' && body[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("chunk header");
+        }
+
+        private static Map<String, String> query(String query) {
+            Map<String, String> params = new HashMap<>();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    int eq = param.indexOf('=');
+                    params.put(eq < 0 ? param : param.substring(0, eq), eq < 0 ? "" : param.substring(eq + 1));
+                }
+            }
+            return params;
+        }
+
+        private static String key(String path) {
+            return path.substring(path.indexOf('/') + 1);
+        }
+
+        private static void sendXml(HttpExchange exchange, String xml) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            send(exchange, 200, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        }
+
+        private static String md5(byte[] bytes) {
+            try {
+                return Sha256.hex(java.security.MessageDigest.getInstance("MD5").digest(bytes));
+            } catch (java.security.NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}